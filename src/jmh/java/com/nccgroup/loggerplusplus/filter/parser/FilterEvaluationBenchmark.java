@@ -0,0 +1,128 @@
+package com.nccgroup.loggerplusplus.filter.parser;
+
+import com.nccgroup.loggerplusplus.logentry.FieldDictionary;
+import com.nccgroup.loggerplusplus.logentry.FieldValueSource;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Compares filtering a table of entries by walking the filter's AST, as filters did before, with the
+ * predicate built by {@link FilterCompiler}. Each operation tests every entry once, as refiltering the table does.
+ * <p>
+ * Entries are plain field maps, so only the filter's own cost is measured, not deriving the fields from messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterEvaluationBenchmark {
+
+    private static final Map<String, String> FILTERS = Map.of(
+            "dictionaryEquals", "Request.Method == \"GET\"",
+            "numericAnd", "Response.Status >= 400 && Request.Length < 300",
+            "stringOr", "Request.Path CONTAINS \"api\" || Request.Hostname CONTAINS \"example\"",
+            "regex", "Request.Path MATCHES \"/api/.*\\.js\"",
+            "inList", "Request.Host IN [\"https://host1.example.com\", \"https://host7.example.com\", \"https://host42.example.com\", \"https://host99.example.com\"]",
+            "bodyContains", "Response.Body CONTAINS \"password\"",
+            "compound", "Request.Method != \"OPTIONS\" && (Response.Status == 200 || Response.Status == 302) && !(Request.IsSSL)");
+
+    private static final String[] METHODS = {"GET", "GET", "GET", "POST", "PUT", "OPTIONS"};
+    private static final String[] PATHS = {"/", "/api/users", "/api/orders/1", "/static/app.js", "/api/app.js", "/login", "/search"};
+    private static final short[] STATUSES = {200, 200, 200, 302, 304, 404, 500};
+
+    @Param({"dictionaryEquals", "numericAnd", "stringOr", "regex", "inList", "bodyContains", "compound"})
+    public String filter;
+
+    @Param({"10000"})
+    public int entryCount;
+
+    private FieldValueSource[] entries;
+    private ASTExpression ast;
+    private LegacyFilterEvaluationVisitor visitor;
+    private Predicate<FieldValueSource> compiled;
+
+    private static final class Entry implements FieldValueSource {
+        private final EnumMap<LogEntryField, Object> fields = new EnumMap<>(LogEntryField.class);
+        private final int[] dictionaryCodes = new int[LogEntryField.values().length];
+
+        private Entry() {
+            Arrays.fill(dictionaryCodes, FieldDictionary.NO_CODE);
+        }
+
+        //Dictionary fields are encoded as processing does, holding their code as entries do.
+        private void putEncoded(LogEntryField field, String value) {
+            String encoded = LogEntry.FIELD_DICTIONARY.encode(value);
+            fields.put(field, encoded);
+            dictionaryCodes[field.ordinal()] = LogEntry.FIELD_DICTIONARY.codeOf(encoded);
+        }
+
+        @Override
+        public Object getValueByKey(LogEntryField field) {
+            return fields.get(field);
+        }
+
+        @Override
+        public int getDictionaryCode(LogEntryField field) {
+            return dictionaryCodes[field.ordinal()];
+        }
+    }
+
+    @Setup
+    public void setup() throws ParseException {
+        Random random = new Random(1);
+        entries = new FieldValueSource[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            Entry entry = new Entry();
+            String hostname = "host" + random.nextInt(100) + (random.nextBoolean() ? ".example.com" : ".other.org");
+            entry.putEncoded(LogEntryField.METHOD, METHODS[random.nextInt(METHODS.length)]);
+            entry.putEncoded(LogEntryField.HOSTNAME, hostname);
+            entry.putEncoded(LogEntryField.HOST, "https://" + hostname);
+            entry.fields.put(LogEntryField.PATH, PATHS[random.nextInt(PATHS.length)]);
+            entry.fields.put(LogEntryField.STATUS, STATUSES[random.nextInt(STATUSES.length)]);
+            entry.fields.put(LogEntryField.REQUEST_LENGTH, random.nextInt(600));
+            entry.fields.put(LogEntryField.ISSSL, random.nextBoolean());
+            entry.fields.put(LogEntryField.HASPARAMS, random.nextBoolean());
+            entry.fields.put(LogEntryField.RESPONSE_BODY, responseBody(random));
+            entries[i] = entry;
+        }
+
+        ast = FilterParser.parseFilter(FILTERS.get(filter));
+        visitor = new LegacyFilterEvaluationVisitor(alias -> null);
+        compiled = FilterCompiler.compile(ast, alias -> null, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public int visitor() {
+        int matches = 0;
+        for (FieldValueSource entry : entries) {
+            if (visitor.visit(ast, entry)) matches++;
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int compiled() {
+        int matches = 0;
+        for (FieldValueSource entry : entries) {
+            if (compiled.test(entry)) matches++;
+        }
+        return matches;
+    }
+
+    private static String responseBody(Random random) {
+        StringBuilder sb = new StringBuilder("<html><body>");
+        int paragraphs = 5 + random.nextInt(40);
+        for (int i = 0; i < paragraphs; i++) {
+            sb.append("<p>Lorem ipsum dolor sit amet ").append(random.nextInt(100000)).append("</p>");
+        }
+        if (random.nextInt(20) == 0) sb.append("<input type=\"Password\" name=\"password\">");
+        return sb.append("</body></html>").toString();
+    }
+}
@@ -0,0 +1,114 @@
+package com.nccgroup.loggerplusplus.logentry;
+
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.message.MimeType;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap retained per entry by the fields held in {@link ColumnarEntryStore} columns, with the
+ * entries holding them in rows of their own, as before they are added to the table, against attached to a store.
+ * <p>
+ * Entries have no messages, so the figure is the entry objects themselves. The figure of interest is the
+ * retainedBytesPerRow counter, JMH sums it over the measurement iterations, so divide by their count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ColumnarEntryHeapBenchmark {
+
+    private static final ToolType[] TOOLS = {ToolType.PROXY, ToolType.PROXY, ToolType.REPEATER, ToolType.SCANNER};
+    private static final String[] METHODS = {"GET", "GET", "GET", "POST", "POST", "PUT", "DELETE", "OPTIONS", "HEAD"};
+    private static final short[] STATUSES = {200, 200, 200, 204, 301, 302, 304, 400, 403, 404, 500};
+    private static final String[] EXTENSIONS = {"", "", "", "js", "css", "png", "html", "json", "svg", "woff2"};
+    private static final MimeType[] MIME_TYPES = {MimeType.HTML, MimeType.SCRIPT, MimeType.JSON, MimeType.CSS, MimeType.IMAGE_PNG};
+    private static final int HOSTS = 300;
+
+    @Param({"entry", "columnar"})
+    public String strategy;
+
+    @Param({"200000"})
+    public int rows;
+
+    //Kept reachable until the next iteration, so the entries are still live when measured.
+    private List<LogEntry> table;
+    private ColumnarEntryStore store;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retained {
+        public long retainedBytesPerRow;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytesPerRow = 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTable() {
+        table = null;
+        store = null;
+    }
+
+    @Benchmark
+    public List<LogEntry> buildEntries(Retained retained) {
+        long before = usedHeap();
+        Random random = new Random(1);
+        List<LogEntry> table = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            table.add(entry(random, i));
+        }
+        ColumnarEntryStore store = null;
+        if (strategy.equals("columnar")) {
+            store = new ColumnarEntryStore();
+            store.attach(table);
+        }
+        this.table = table;
+        this.store = store;
+        retained.retainedBytesPerRow = (usedHeap() - before) / rows;
+        return table;
+    }
+
+    private static LogEntry entry(Random random, int i) {
+        //Values as processing sets them, with the low cardinality strings shared through the field dictionary.
+        String hostname = LogEntry.FIELD_DICTIONARY.encode("host" + random.nextInt(HOSTS) + ".example.com");
+        LogEntry entry = new LogEntry(TOOLS[random.nextInt(TOOLS.length)], null, new Date(1_700_000_000_000L + i * 10L));
+        entry.setHostname(hostname);
+        entry.setProtocol("https");
+        entry.setTargetPort((short) 443);
+        entry.setHost(LogEntry.FIELD_DICTIONARY.encode("https://" + hostname));
+        entry.setMethod(LogEntry.FIELD_DICTIONARY.encode(METHODS[random.nextInt(METHODS.length)]));
+        entry.setRequestHttpVersion(LogEntry.FIELD_DICTIONARY.encode("HTTP/1.1"));
+        entry.setUrlExtension(LogEntry.FIELD_DICTIONARY.encode(EXTENSIONS[random.nextInt(EXTENSIONS.length)]));
+        entry.setListenerInterface("127.0.0.1:8080");
+        entry.setRequestBodyLength(random.nextInt(2000));
+        entry.setResponseStatus(STATUSES[random.nextInt(STATUSES.length)]);
+        entry.setResponseBodyLength(random.nextInt(100_000));
+        entry.setResponseHttpVersion(LogEntry.FIELD_DICTIONARY.encode("HTTP/1.1"));
+        MimeType mimeType = MIME_TYPES[random.nextInt(MIME_TYPES.length)];
+        entry.setResponseMimeType(mimeType);
+        entry.setResponseInferredMimeType(mimeType);
+        entry.setResponseTime(new Date(1_700_000_000_000L + i * 10L + random.nextInt(500)));
+        entry.setRequestResponseDelay(random.nextInt(500));
+        return entry;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
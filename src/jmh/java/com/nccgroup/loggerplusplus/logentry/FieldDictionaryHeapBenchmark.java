@@ -0,0 +1,101 @@
+package com.nccgroup.loggerplusplus.logentry;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap retained by the fields of {@link LogEntry#DICTIONARY_FIELDS} across a table of rows,
+ * with a fresh String per field as parsed from each message, against sharing values through {@link FieldDictionary}.
+ * <p>
+ * The figure of interest is the retainedBytes counter, the heap still in use after building the rows and
+ * collecting garbage. JMH sums it over the measurement iterations, so divide by their count for a single table.
+ * Time is reported too, but includes the collections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FieldDictionaryHeapBenchmark {
+
+    private static final String[] METHODS = {"GET", "GET", "GET", "POST", "POST", "PUT", "DELETE", "OPTIONS", "HEAD"};
+    private static final String[] VERSIONS = {"HTTP/1.1", "HTTP/1.1", "HTTP/2"};
+    private static final String[] EXTENSIONS = {"", "", "", "js", "css", "png", "html", "json", "svg", "woff2"};
+    private static final String[] INTERFACES = {"127.0.0.1:8080", "127.0.0.1:8081"};
+    private static final int HOSTS = 300;
+
+    @Param({"fresh", "dictionary"})
+    public String strategy;
+
+    @Param({"500000"})
+    public int rows;
+
+    //Kept reachable until the next iteration, so the rows are still live when measured.
+    private String[][] table;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retained {
+        public long retainedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTable() {
+        table = null;
+    }
+
+    @Benchmark
+    public String[][] buildRows(Retained retained) {
+        long before = usedHeap();
+        FieldDictionary dictionary = strategy.equals("dictionary") ? new FieldDictionary(1 << 16) : null;
+        Random random = new Random(1);
+        String[][] table = new String[rows][];
+        for (int i = 0; i < rows; i++) {
+            table[i] = row(random, dictionary);
+        }
+        this.table = table;
+        retained.retainedBytes = usedHeap() - before;
+        return table;
+    }
+
+    private static String[] row(Random random, FieldDictionary dictionary) {
+        int hostIndex = random.nextInt(HOSTS);
+        boolean https = random.nextInt(4) != 0;
+        String hostname = "host" + hostIndex + ".example.com";
+        String protocol = https ? "https" : "http";
+        return new String[]{
+                field(hostname, dictionary),
+                field(protocol + "://" + hostname, dictionary),
+                field(protocol, dictionary),
+                field(METHODS[random.nextInt(METHODS.length)], dictionary),
+                field(VERSIONS[random.nextInt(VERSIONS.length)], dictionary),
+                field(VERSIONS[random.nextInt(VERSIONS.length)], dictionary),
+                field(EXTENSIONS[random.nextInt(EXTENSIONS.length)], dictionary),
+                field(INTERFACES[random.nextInt(INTERFACES.length)], dictionary)
+        };
+    }
+
+    private static String field(String value, FieldDictionary dictionary) {
+        //Each message is parsed into new Strings, so copy the value as parsing would.
+        String parsed = new String(value.toCharArray());
+        return dictionary != null ? dictionary.encode(parsed) : parsed;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,165 @@
+package com.nccgroup.loggerplusplus.logview.logtable;
+
+import com.nccgroup.loggerplusplus.filter.colorfilter.TableColorRule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures painting one screen of the log table through prepareRenderer, comparing the previous per-cell
+ * coloring, which copied the selected rows and looked up every matching color rule, with reading the entry's
+ * highest priority rule as {@link LogTable} now does.
+ * <p>
+ * LogTable itself needs the running extension, so the two tables here are plain tables which color their cells
+ * with {@link LogTable#colorCell}, differing only in how they find the row's selection and rule. Rows hold what
+ * each reads from a LogEntry: the matching rule ids and the cached rule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PrepareRendererBenchmark {
+
+    private static final int ROWS = 10000;
+    private static final int COLUMNS = 40;
+    private static final int VISIBLE_ROWS = 60;
+
+    @Param({"0", "1000"})
+    public int selectedRows;
+
+    @Param({"20"})
+    public int colorRules;
+
+    private LegacyColoringTable legacyTable;
+    private CachedRuleTable cachedRuleTable;
+
+    private static final class Row {
+        private final List<UUID> matchingColorFilters = new ArrayList<>();
+        private TableColorRule colorRule;
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        Map<UUID, TableColorRule> rules = new HashMap<>();
+        List<TableColorRule> ruleList = new ArrayList<>();
+        for (int i = 0; i < colorRules; i++) {
+            TableColorRule rule = new TableColorRule();
+            rule.setPriority((short) i);
+            rule.setEnabled(true);
+            rule.setBackgroundColor(new Color(random.nextInt(0xFFFFFF)));
+            rule.setForegroundColor(Color.BLACK);
+            rules.put(rule.getUuid(), rule);
+            ruleList.add(rule);
+        }
+
+        Row[] rows = new Row[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            Row row = new Row();
+            //Most rows match nothing, a few match one or more rules.
+            int matches = random.nextInt(4) == 0 ? 1 + random.nextInt(3) : 0;
+            for (int m = 0; m < matches; m++) {
+                TableColorRule rule = ruleList.get(random.nextInt(ruleList.size()));
+                row.matchingColorFilters.add(rule.getUuid());
+                if (row.colorRule == null || rule.getPriority() < row.colorRule.getPriority()) row.colorRule = rule;
+            }
+            rows[i] = row;
+        }
+
+        DefaultTableModel model = new DefaultTableModel(ROWS, COLUMNS);
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLUMNS; c++) {
+                model.setValueAt("value " + r + ":" + c, r, c);
+            }
+        }
+        legacyTable = new LegacyColoringTable(model, rows, rules);
+        cachedRuleTable = new CachedRuleTable(model, rows);
+        //Scattered selection, as after ctrl-clicking or selecting a filtered range.
+        for (JTable table : new JTable[]{legacyTable, cachedRuleTable}) {
+            table.getSelectionModel().setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+            Random selection = new Random(2);
+            for (int i = 0; i < selectedRows; i++) {
+                int row = selection.nextInt(ROWS);
+                table.addRowSelectionInterval(row, row);
+            }
+        }
+    }
+
+    @Benchmark
+    public void legacyPrepareRenderer(Blackhole blackhole) {
+        paintScreen(legacyTable, blackhole);
+    }
+
+    @Benchmark
+    public void cachedRulePrepareRenderer(Blackhole blackhole) {
+        paintScreen(cachedRuleTable, blackhole);
+    }
+
+    private static void paintScreen(JTable table, Blackhole blackhole) {
+        for (int row = 0; row < VISIBLE_ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                TableCellRenderer renderer = table.getCellRenderer(row, column);
+                blackhole.consume(table.prepareRenderer(renderer, row, column).getBackground());
+            }
+        }
+    }
+
+    private static final class LegacyColoringTable extends JTable {
+        private final Row[] rows;
+        private final Map<UUID, TableColorRule> colorFilters;
+
+        private LegacyColoringTable(DefaultTableModel model, Row[] rows, Map<UUID, TableColorRule> colorFilters) {
+            super(model);
+            this.rows = rows;
+            this.colorFilters = colorFilters;
+        }
+
+        @Override
+        public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
+            Row entry = rows[convertRowIndexToModel(row)];
+            Component c = super.prepareRenderer(renderer, row, column);
+
+            //Copied the selected rows and looked up every matching rule for each cell.
+            boolean selected = IntStream.of(this.getSelectedRows()).anyMatch(i -> i == row);
+            TableColorRule tableColorRule = null;
+            if (!selected) {
+                for (UUID uid : entry.matchingColorFilters) {
+                    if (tableColorRule == null || tableColorRule.getPriority() > colorFilters.get(uid).getPriority()) {
+                        tableColorRule = colorFilters.get(uid);
+                    }
+                }
+            }
+            LogTable.colorCell(this, c, selected, tableColorRule);
+            return c;
+        }
+    }
+
+    private static final class CachedRuleTable extends JTable {
+        private final Row[] rows;
+
+        private CachedRuleTable(DefaultTableModel model, Row[] rows) {
+            super(model);
+            this.rows = rows;
+        }
+
+        @Override
+        public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
+            Row entry = rows[convertRowIndexToModel(row)];
+            Component c = super.prepareRenderer(renderer, row, column);
+
+            boolean selected = isRowSelected(row);
+            LogTable.colorCell(this, c, selected, selected ? null : entry.colorRule);
+            return c;
+        }
+    }
+}
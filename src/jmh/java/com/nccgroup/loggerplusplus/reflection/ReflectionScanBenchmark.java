@@ -0,0 +1,166 @@
+package com.nccgroup.loggerplusplus.reflection;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Compares ways of finding which request parameters are reflected in a response body.
+ * <ul>
+ *     <li>The previous approach, a regex per parameter and transformation, with the parameters spread over the
+ *     common ForkJoinPool by a parallel stream.</li>
+ *     <li>The same regexes checked sequentially.</li>
+ *     <li>A single pass of {@link ReflectionMatcher} on the calling thread, as {@link ReflectionController} does.</li>
+ * </ul>
+ * The transformers mirror the defaults of the reflection settings, without needing Burp's preferences.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReflectionScanBenchmark {
+
+    private static final String[] WORDS = {"account", "session", "user", "search", "results", "page", "order",
+            "item", "price", "total", "checkout", "profile", "settings", "help", "contact", "login", "logout"};
+
+    private static final List<UnaryOperator<String>> TRANSFORMERS = List.of(
+            value -> URLEncoder.encode(value, StandardCharsets.UTF_8),
+            value -> URLDecoder.decode(value, StandardCharsets.UTF_8),
+            value -> Base64.getEncoder().encodeToString(value.getBytes()),
+            value -> new String(Base64.getDecoder().decode(value)),
+            StringEscapeUtils::escapeHtml4,
+            StringEscapeUtils::unescapeHtml4,
+            StringEscapeUtils::escapeJson,
+            StringEscapeUtils::unescapeJson,
+            StringEscapeUtils::escapeXml11,
+            StringEscapeUtils::unescapeXml,
+            value -> HexFormat.of().formatHex(value.getBytes()));
+
+    @Param({"html", "json"})
+    public String corpus;
+
+    @Param({"8192", "262144", "4194304"})
+    public int bodyLength;
+
+    @Param({"8", "40"})
+    public int parameterCount;
+
+    private String body;
+    private String[] values;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        values = new String[parameterCount];
+        for (int i = 0; i < parameterCount; i++) {
+            values[i] = parameterValue(random, i);
+        }
+        body = corpus.equals("json") ? jsonBody(random) : htmlBody(random);
+    }
+
+    @Benchmark
+    public long perParameterRegexCommonPool() {
+        return Arrays.stream(values).parallel().filter(this::isReflectedByRegex).count();
+    }
+
+    @Benchmark
+    public long perParameterRegexSequential() {
+        return Arrays.stream(values).filter(this::isReflectedByRegex).count();
+    }
+
+    @Benchmark
+    public BitSet singlePassSequential() {
+        return buildMatcher().findGroups(body);
+    }
+
+    private boolean isReflectedByRegex(String value) {
+        if (body.contains(value)) return true;
+        for (UnaryOperator<String> transformer : TRANSFORMERS) {
+            try {
+                Pattern pattern = Pattern.compile("\\Q" + transformer.apply(value) + "\\E", Pattern.CASE_INSENSITIVE);
+                if (pattern.matcher(body).find()) return true;
+            } catch (Exception e) {
+                //Transformation failed. Ignore and continue.
+            }
+        }
+        return false;
+    }
+
+    private ReflectionMatcher buildMatcher() {
+        ReflectionMatcher matcher = new ReflectionMatcher(values.length);
+        for (int i = 0; i < values.length; i++) {
+            matcher.addPattern(i, values[i], true);
+            for (UnaryOperator<String> transformer : TRANSFORMERS) {
+                try {
+                    matcher.addPattern(i, transformer.apply(values[i]), false);
+                } catch (Exception e) {
+                    //Transformation failed. Ignore and continue.
+                }
+            }
+        }
+        return matcher;
+    }
+
+    private static String parameterValue(Random random, int index) {
+        switch (index % 4) {
+            case 0: return WORDS[random.nextInt(WORDS.length)] + random.nextInt(100000);
+            case 1: return "<script>alert(" + random.nextInt(1000) + ")</script>";
+            case 2: return "a b&c=" + random.nextInt(1000);
+            default: return Long.toHexString(random.nextLong());
+        }
+    }
+
+    /**
+     * Roughly a third of the parameters are reflected, raw or escaped, once the body is at least a few KB.
+     */
+    private String reflection(Random random) {
+        String value = values[random.nextInt(values.length)];
+        switch (random.nextInt(4)) {
+            case 0: return value;
+            case 1: return StringEscapeUtils.escapeHtml4(value);
+            case 2: return URLEncoder.encode(value, StandardCharsets.UTF_8);
+            default: return StringEscapeUtils.escapeJson(value);
+        }
+    }
+
+    private String htmlBody(Random random) {
+        StringBuilder sb = new StringBuilder(bodyLength + 256);
+        sb.append("<!DOCTYPE html><html><head><title>Results</title></head><body>\n");
+        while (sb.length() < bodyLength) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append("<div class=\"").append(word).append("\"><a href=\"/").append(word).append("?id=")
+                    .append(random.nextInt(100000)).append("\">").append(word).append(' ')
+                    .append(WORDS[random.nextInt(WORDS.length)]).append("</a></div>\n");
+            if (random.nextInt(200) == 0) {
+                sb.append("<input type=\"hidden\" value=\"").append(reflection(random)).append("\">\n");
+            }
+        }
+        sb.append("</body></html>");
+        return sb.toString();
+    }
+
+    private String jsonBody(Random random) {
+        StringBuilder sb = new StringBuilder(bodyLength + 256);
+        sb.append("{\"results\":[");
+        while (sb.length() < bodyLength) {
+            sb.append("{\"id\":").append(random.nextInt(100000))
+                    .append(",\"name\":\"").append(WORDS[random.nextInt(WORDS.length)])
+                    .append("\",\"tags\":[\"").append(WORDS[random.nextInt(WORDS.length)]).append("\"]");
+            if (random.nextInt(200) == 0) {
+                sb.append(",\"query\":\"").append(reflection(random)).append('"');
+            }
+            sb.append("},");
+        }
+        sb.append("{}]}");
+        return sb.toString();
+    }
+}
@@ -113,6 +113,8 @@ public class LoggerPlusPlus implements BurpExtension {
 
         //Stop log processor executors and pending tasks.
         logProcessor.shutdown();
+        exportController.shutdown();
+        logViewController.getLogTableController().shutdown();
 
         menuBarRegistration.deregister();
 
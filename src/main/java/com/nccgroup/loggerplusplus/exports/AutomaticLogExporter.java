@@ -1,7 +1,13 @@
 package com.nccgroup.loggerplusplus.exports;
 
 import com.coreyd97.BurpExtenderUtilities.Preferences;
+import com.nccgroup.loggerplusplus.filter.logfilter.LogTableFilter;
 import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 public abstract class AutomaticLogExporter extends LogExporter {
 
@@ -27,6 +33,21 @@ public abstract class AutomaticLogExporter extends LogExporter {
      */
     abstract void exportUpdatedEntry(LogEntry logEntry);
 
+    /**
+     * The fields read by the exporter, so they can be prepared ahead of export
+     * @return The exported fields, and those used by any export filter
+     */
+    Set<LogEntryField> getRequiredFields() {
+        return new HashSet<>();
+    }
+
+    static Set<LogEntryField> getRequiredFields(Collection<LogEntryField> fields, LogTableFilter logFilter) {
+        Set<LogEntryField> requiredFields = new HashSet<>();
+        if (fields != null) requiredFields.addAll(fields);
+        if (logFilter != null) requiredFields.addAll(logFilter.getFilterExpression().getRequiredFields());
+        return requiredFields;
+    }
+
     /**
      * Clean up the exporter and its resources
      * @throws Exception
@@ -15,6 +15,7 @@ import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.io.*;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
@@ -157,6 +158,11 @@ public class CSVExporter extends AutomaticLogExporter implements ContextMenuExpo
         }
     }
 
+    @Override
+    Set<LogEntryField> getRequiredFields() {
+        return getRequiredFields(fields, null);
+    }
+
     @Override
     public void exportNewEntry(final LogEntry logEntry) {
         if(logEntry.getStatus() == Status.PROCESSED) {
@@ -50,7 +50,7 @@ import java.util.concurrent.TimeUnit;
 public class ElasticExporter extends AutomaticLogExporter implements ExportPanelProvider, ContextMenuExportProvider {
 
     ElasticsearchClient elasticClient;
-    ArrayList<LogEntry> pendingEntries;
+    final ArrayList<LogEntry> pendingEntries;
     LogTableFilter logFilter;
     private List<LogEntryField> fields;
     private String indexName;
@@ -66,6 +66,7 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
     protected ElasticExporter(ExportController exportController, Preferences preferences) {
         super(exportController, preferences);
         this.fields = new ArrayList<>(preferences.getSetting(Globals.PREF_PREVIOUS_ELASTIC_FIELDS));
+        this.pendingEntries = new ArrayList<>();
         executorService = Executors.newScheduledThreadPool(1);
 
         this.mapper = new ObjectMapper();
@@ -150,7 +151,9 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
         elasticClient = new ElasticsearchClient(transport);
 
         createIndices();
-        pendingEntries = new ArrayList<>();
+        synchronized (pendingEntries) {
+            pendingEntries.clear();
+        }
         int delay = preferences.getSetting(Globals.PREF_ELASTIC_DELAY);
         indexTask = executorService.scheduleAtFixedRate(this::indexPendingEntries, delay, delay, TimeUnit.SECONDS);
     }
@@ -159,7 +162,9 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
     public void exportNewEntry(final LogEntry logEntry) {
         if(logEntry.getStatus() == Status.PROCESSED) {
             if (logFilter != null && !logFilter.getFilterExpression().matches(logEntry)) return;
-            pendingEntries.add(logEntry);
+            synchronized (pendingEntries) {
+                pendingEntries.add(logEntry);
+            }
         }
     }
 
@@ -167,7 +172,9 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
     public void exportUpdatedEntry(final LogEntry updatedEntry) {
         if(updatedEntry.getStatus() == Status.PROCESSED) {
             if (logFilter != null && !logFilter.getFilterExpression().matches(updatedEntry)) return;
-            pendingEntries.add(updatedEntry);
+            synchronized (pendingEntries) {
+                pendingEntries.add(updatedEntry);
+            }
         }
     }
 
@@ -176,7 +183,10 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
         if(this.indexTask != null){
             indexTask.cancel(true);
         }
-        this.pendingEntries = null;
+        //Cleared rather than dropped, an entry already being dispatched may still be added.
+        synchronized (pendingEntries) {
+            pendingEntries.clear();
+        }
     }
 
     @Override
@@ -280,6 +290,11 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
         this.fields = fields;
     }
 
+    @Override
+    Set<LogEntryField> getRequiredFields() {
+        return getRequiredFields(fields, logFilter);
+    }
+
     private class EntrySerializer extends StdSerializer<LogEntry> {
 
         public EntrySerializer(Class<LogEntry> t) {
@@ -2,22 +2,75 @@ package com.nccgroup.loggerplusplus.exports;
 
 import com.coreyd97.BurpExtenderUtilities.Preferences;
 import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
+import lombok.extern.log4j.Log4j2;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Owns the exporters, and dispatches captured entries to the enabled automatic exporters.
+ * <p>
+ * Entries are handed to a bounded dispatch queue drained by a single worker, so the cost of
+ * exporter filters and queueing never lands on the capture threads or the UI thread.
+ */
+@Log4j2
 public class ExportController {
+    private static final int DISPATCH_QUEUE_SIZE = 10000;
+
     private final Preferences preferences;
     private final HashMap<Class<? extends LogExporter>, LogExporter> exporters;
     private final List<AutomaticLogExporter> enabledExporters;
+    private final BlockingQueue<ExportTask> dispatchQueue;
+    private final ExecutorService dispatchExecutor;
+    private final AtomicLong dispatchLag;
+    private final Map<AutomaticLogExporter, ExportTiming> exportTimings;
+    private final AtomicLong droppedExports;
+    private final AtomicBoolean dispatchOverloaded;
+    private final List<Runnable> enabledExportersListeners;
+
+    private static class ExportTask {
+        private final LogEntry logEntry;
+        private final boolean isUpdate;
+        private final long queuedAt;
+
+        private ExportTask(LogEntry logEntry, boolean isUpdate) {
+            this.logEntry = logEntry;
+            this.isUpdate = isUpdate;
+            this.queuedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Time spent by an exporter handling entries, measured around its own calls only.
+     */
+    private static class ExportTiming {
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong entries = new AtomicLong();
+    }
 
     public ExportController(Preferences preferences) {
         this.preferences = preferences;
 
         this.exporters = new HashMap<>();
         this.enabledExporters = Collections.synchronizedList(new ArrayList<>());
+        this.dispatchQueue = new ArrayBlockingQueue<>(DISPATCH_QUEUE_SIZE);
+        this.dispatchLag = new AtomicLong(0);
+        this.exportTimings = new ConcurrentHashMap<>();
+        this.droppedExports = new AtomicLong(0);
+        this.dispatchOverloaded = new AtomicBoolean(false);
+        this.enabledExportersListeners = new CopyOnWriteArrayList<>();
+        this.dispatchExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("LPP-Export-Dispatch"));
+        this.dispatchExecutor.execute(this::dispatchLoop);
 
         initializeExporters();
     }
@@ -41,23 +94,138 @@ public class ExportController {
 
     public void enableExporter(AutomaticLogExporter logExporter) throws Exception {
         logExporter.setup();
+        this.exportTimings.put(logExporter, new ExportTiming());
         this.enabledExporters.add(logExporter);
+        this.enabledExportersListeners.forEach(Runnable::run);
     }
 
     public void disableExporter(AutomaticLogExporter logExporter) throws Exception {
         this.enabledExporters.remove(logExporter);
+        this.exportTimings.remove(logExporter);
         logExporter.shutdown();
+        this.enabledExportersListeners.forEach(Runnable::run);
     }
 
-    public void exportNewEntry(LogEntry logEntry) {
-        for (AutomaticLogExporter exporter : this.enabledExporters) {
-            exporter.exportNewEntry(logEntry);
+    /**
+     * Be notified when an exporter is enabled or disabled
+     */
+    public void addEnabledExportersListener(Runnable listener) {
+        this.enabledExportersListeners.add(listener);
+    }
+
+    /**
+     * @return The fields read by the enabled exporters
+     */
+    public Set<LogEntryField> getRequiredFields() {
+        Set<LogEntryField> requiredFields = new HashSet<>();
+        synchronized (this.enabledExporters) {
+            for (AutomaticLogExporter exporter : this.enabledExporters) {
+                requiredFields.addAll(exporter.getRequiredFields());
+            }
         }
+        return requiredFields;
+    }
+
+    public void exportNewEntry(LogEntry logEntry) {
+        queueExport(new ExportTask(logEntry, false));
     }
 
     public void exportUpdatedEntry(LogEntry logEntry) {
-        for (AutomaticLogExporter exporter : this.enabledExporters) {
-            exporter.exportUpdatedEntry(logEntry);
+        queueExport(new ExportTask(logEntry, true));
+    }
+
+    private void queueExport(ExportTask task) {
+        if (this.enabledExporters.isEmpty()) return;
+        //Never hold up the caller, if the exporters can't keep up the entry is dropped.
+        if (!dispatchQueue.offer(task)) {
+            droppedExports.incrementAndGet();
+            //Warn once per overload rather than for every entry, the count is shown in the preferences.
+            if (dispatchOverloaded.compareAndSet(false, true)) {
+                log.warn("Export dispatch queue is full ({} entries). Entries will not be exported until the exporters catch up.",
+                        DISPATCH_QUEUE_SIZE);
+            } else {
+                log.debug("Export dispatch queue is full ({} entries). Dropping log entry.", DISPATCH_QUEUE_SIZE);
+            }
+        }
+    }
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            ExportTask task;
+            try {
+                if (dispatchQueue.isEmpty() && dispatchOverloaded.compareAndSet(true, false)) {
+                    log.info("Export dispatch queue has drained. {} entries were dropped in total.", droppedExports.get());
+                }
+                task = dispatchQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long dispatchedAt = System.nanoTime();
+            dispatchLag.set(TimeUnit.NANOSECONDS.toMillis(dispatchedAt - task.queuedAt));
+
+            ArrayList<AutomaticLogExporter> exporters;
+            synchronized (this.enabledExporters) {
+                exporters = new ArrayList<>(this.enabledExporters);
+            }
+            for (AutomaticLogExporter exporter : exporters) {
+                //Exporters disabled since the snapshot was taken have been shut down, so must not be handed entries.
+                ExportTiming timing = exportTimings.get(exporter);
+                if (timing == null || !this.enabledExporters.contains(exporter)) continue;
+                long startedAt = System.nanoTime();
+                try {
+                    if (task.isUpdate) {
+                        exporter.exportUpdatedEntry(task.logEntry);
+                    } else {
+                        exporter.exportNewEntry(task.logEntry);
+                    }
+                } catch (Exception e) {
+                    log.error("Exporter " + exporter.getClass().getSimpleName() + " failed to export entry", e);
+                }
+                timing.nanos.addAndGet(System.nanoTime() - startedAt);
+                timing.entries.incrementAndGet();
+            }
         }
     }
+
+    /**
+     * Get the time, in milliseconds, the most recently dispatched entry spent waiting in the dispatch queue.
+     * The queue is shared, so this is the same for every exporter.
+     */
+    public long getDispatchLag() {
+        return dispatchLag.get();
+    }
+
+    /**
+     * Get the average time, in microseconds, the given exporter has taken to handle an entry since it was enabled.
+     * Exporters are handed entries one after another, so a slow exporter holds up the others and adds to the dispatch lag.
+     */
+    public long getAverageExportTime(AutomaticLogExporter exporter) {
+        ExportTiming timing = exportTimings.get(exporter);
+        if (timing == null) return 0;
+        long entries = timing.entries.get();
+        return entries == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(timing.nanos.get() / entries);
+    }
+
+    /**
+     * Get the number of entries waiting to be dispatched to the exporters
+     */
+    public int getDispatchQueueSize() {
+        return dispatchQueue.size();
+    }
+
+    public int getDispatchQueueCapacity() {
+        return DISPATCH_QUEUE_SIZE;
+    }
+
+    /**
+     * Get the number of entries dropped because the dispatch queue was full
+     */
+    public long getDroppedExports() {
+        return droppedExports.get();
+    }
+
+    public void shutdown() {
+        this.dispatchExecutor.shutdownNow();
+    }
 }
@@ -111,7 +111,7 @@ public class HarSerializer extends TypeAdapter<List<LogEntry>> {
                 writer.endObject(); // end postData object
             }
 
-            writer.name("headersSize").value(logEntry.getRequestBytes().length - logEntry.getRequestBodyLength());
+            writer.name("headersSize").value(logEntry.getRequestBuffer().remaining() - logEntry.getRequestBodyLength());
             writer.name("bodySize").value(logEntry.getRequestBodyLength());
 
             writer.endObject(); // end request object
@@ -149,7 +149,7 @@ public class HarSerializer extends TypeAdapter<List<LogEntry>> {
 
             writer.name("redirectURL").value(String.valueOf(logEntry.getValueByKey(LogEntryField.REDIRECT_URL)));
             if (logEntry.getResponse() != null) {
-                writer.name("headersSize").value(logEntry.getResponseBytes().length - logEntry.getResponseBodyLength());
+                writer.name("headersSize").value(logEntry.getResponseBuffer().remaining() - logEntry.getResponseBodyLength());
                 writer.name("bodySize").value(logEntry.getResponseBodyLength());
             } else {
                 writer.name("headersSize").value(0);
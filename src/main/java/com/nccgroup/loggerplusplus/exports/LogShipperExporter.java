@@ -10,6 +10,7 @@ import lombok.extern.log4j.Log4j2;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -288,4 +289,9 @@ public abstract class LogShipperExporter extends AutomaticLogExporter implements
         preferences.setSetting(getFieldsPreferenceKey(), fields);
         this.fields = fields;
     }
+
+    @Override
+    Set<LogEntryField> getRequiredFields() {
+        return getRequiredFields(fields, logFilter);
+    }
 }
@@ -2,6 +2,7 @@ package com.nccgroup.loggerplusplus.filter;
 
 import com.google.gson.annotations.JsonAdapter;
 import com.nccgroup.loggerplusplus.filter.colorfilter.TableColorRule;
+import com.nccgroup.loggerplusplus.filter.parser.ParseException;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -30,6 +31,18 @@ public abstract class ColorizingFilterRule extends FilterRule {
         super(name, filter);
     }
 
+    //Entries are only tested when they are logged or the rule changes, so relative times would go stale.
+    @Override
+    public void parseAndSetFilter(String filterString) throws ParseException {
+        super.parseAndSetFilter(filterString);
+        try {
+            getFilterExpression().checkNoRelativeTime();
+        } catch (ParseException e) {
+            setFilter(null);
+            throw e;
+        }
+    }
+
     @Override
     public boolean equals(Object obj) {
         if(obj instanceof ColorizingFilterRule){
@@ -2,16 +2,18 @@ package com.nccgroup.loggerplusplus.filter;
 
 import com.nccgroup.loggerplusplus.LoggerPlusPlus;
 import com.nccgroup.loggerplusplus.filter.parser.ASTExpression;
-import com.nccgroup.loggerplusplus.filter.parser.FilterEvaluationVisitor;
+import com.nccgroup.loggerplusplus.filter.parser.FilterCompiler;
 import com.nccgroup.loggerplusplus.filter.parser.FilterParser;
 import com.nccgroup.loggerplusplus.filter.parser.ParseException;
+import com.nccgroup.loggerplusplus.filterlibrary.FilterLibraryController;
 import com.nccgroup.loggerplusplus.logentry.FieldGroup;
-import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.FieldValueSource;
 import com.nccgroup.loggerplusplus.logentry.LogEntryField;
 import lombok.Getter;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.function.Predicate;
 
 public class FilterExpression {
 
@@ -24,6 +26,26 @@ public class FilterExpression {
     @Getter
     protected HashSet<FieldGroup> requiredContexts;
 
+    @Getter
+    protected HashSet<LogEntryField> requiredFields;
+
+    //Whether the filter, or a snippet it uses, compares against a time relative to now.
+    private transient volatile boolean relativeTime;
+    private transient volatile CompiledFilter compiled;
+
+    //The compiled filter, with the version of the snippets and the second it was compiled at.
+    private static final class CompiledFilter {
+        private final Predicate<FieldValueSource> predicate;
+        private final int snippetVersion;
+        private final long second;
+
+        private CompiledFilter(Predicate<FieldValueSource> predicate, int snippetVersion, long second) {
+            this.predicate = predicate;
+            this.snippetVersion = snippetVersion;
+            this.second = second;
+        }
+    }
+
     public FilterExpression(String filterString) throws ParseException {
         this(null, filterString);
     }
@@ -31,13 +53,61 @@ public class FilterExpression {
     public FilterExpression(String alias, String filterString) throws ParseException {
         this.ast = FilterParser.parseFilter(filterString);
         HashMap<String, Object> filterInfo = FilterParser.validateFilterDependencies(LoggerPlusPlus.instance.getLibraryController(), alias, this.ast);
-        snippetDependencies = (HashSet<String>) filterInfo.get("dependencies");
-        requiredContexts = (HashSet<FieldGroup>) filterInfo.get("contexts");
+        setFilterInfo(filterInfo);
+    }
+
+    public boolean matches(FieldValueSource entry){
+        return getMatcher().test(entry);
+    }
+
+    /**
+     * Get the filter as of now. Relative times are resolved once, so use the same matcher to test every
+     * entry in a pass over many entries.
+     */
+    public Predicate<FieldValueSource> getMatcher(){
+        FilterLibraryController libraryController = LoggerPlusPlus.instance.getLibraryController();
+        int snippetVersion = libraryController.getSnippetVersion();
+        long now = System.currentTimeMillis();
+        long second = now / 1000;
+        CompiledFilter filter = compiled;
+        if (filter == null || filter.snippetVersion != snippetVersion) {
+            //Aliases are resolved when compiling, so a change to the snippets needs a recompile.
+            if (filter != null) relativeTime = checkRelativeTime(libraryController);
+        } else if (!relativeTime || filter.second == second) {
+            return filter.predicate;
+        }
+        filter = new CompiledFilter(FilterCompiler.compile(ast, libraryController, now), snippetVersion, second);
+        compiled = filter;
+        return filter.predicate;
+    }
+
+    /**
+     * @return If the filter, or a snippet it uses, compares against a time relative to now, e.g. now-15m.
+     * Entries must be tested against these again as time passes.
+     */
+    public boolean usesRelativeTime(){
+        return relativeTime;
     }
 
-    public boolean matches(LogEntry entry){
-        FilterEvaluationVisitor visitor = new FilterEvaluationVisitor(LoggerPlusPlus.instance.getLibraryController());
-        return visitor.visit(ast, entry);
+    /**
+     * Check the filter can be used where entries are only tested once, e.g. when they are logged.
+     * @throws ParseException If the filter, or a snippet it uses, compares against a time relative to now
+     */
+    public void checkNoRelativeTime() throws ParseException {
+        relativeTime = checkRelativeTime(LoggerPlusPlus.instance.getLibraryController());
+        if (relativeTime) {
+            throw new ParseException("Relative times, e.g. now-15m, can only be used in the log filter. " +
+                    "Entries are not tested against this filter again as time passes.");
+        }
+    }
+
+    private boolean checkRelativeTime(FilterLibraryController libraryController){
+        try {
+            return Boolean.TRUE.equals(FilterParser.validateFilterDependencies(libraryController, null, ast).get("relativeTime"));
+        } catch (ParseException e) {
+            //A snippet it uses is no longer valid, keep what was known.
+            return relativeTime;
+        }
     }
 
     public void addConditionToFilter(LogicalOperator logicalOperator, LogEntryField field,
@@ -50,9 +120,22 @@ public class FilterExpression {
         }
 
         this.ast = FilterParser.parseFilter(String.format("%s %s %s %s %s", existing, logicalOperator.toString(), field.toString(), booleanOperator, value));
+        this.compiled = null;
         HashMap<String, Object> filterInfo = FilterParser.validateFilterDependencies(LoggerPlusPlus.instance.getLibraryController(), null, this.ast);
-        snippetDependencies = (HashSet<String>) filterInfo.get("dependencies");
-        requiredContexts = (HashSet<FieldGroup>) filterInfo.get("contexts");
+        setFilterInfo(filterInfo);
+    }
+
+    private void setFilterInfo(HashMap<String, Object> filterInfo) {
+        snippetDependencies = getInfoSet(filterInfo, "dependencies");
+        relativeTime = Boolean.TRUE.equals(filterInfo.get("relativeTime"));
+        requiredContexts = getInfoSet(filterInfo, "contexts");
+        requiredFields = getInfoSet(filterInfo, "fields");
+    }
+
+    //AliasCheckVisitor stores each of these as a HashSet of the matching type.
+    @SuppressWarnings("unchecked")
+    private static <T> HashSet<T> getInfoSet(HashMap<String, Object> filterInfo, String key) {
+        return (HashSet<T>) filterInfo.get(key);
     }
 
     @Override
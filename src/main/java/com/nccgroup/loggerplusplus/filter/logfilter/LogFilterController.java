@@ -148,6 +148,15 @@ public class LogFilterController {
         formatFilter("");
     }
 
+    /**
+     * Stop applying a filter still being tested in the background, restoring the previous filter.
+     */
+    public void cancelFiltering() {
+        logTable.cancelFiltering();
+        LogTableFilter currentFilter = logTable.getCurrentFilter();
+        formatFilter(currentFilter != null ? currentFilter.toString() : "");
+    }
+
     public void setFilter(LogTableFilter filter) {
         if (filter == null) {
             clearFilter();
@@ -5,6 +5,7 @@ import com.nccgroup.loggerplusplus.filter.FilterExpression;
 import com.nccgroup.loggerplusplus.filter.colorfilter.TableColorRule;
 import com.nccgroup.loggerplusplus.filter.colorfilter.ColorFilterListener;
 import com.nccgroup.loggerplusplus.filter.logfilter.LogTableFilter;
+import com.nccgroup.loggerplusplus.filter.parser.ParseException;
 import com.nccgroup.loggerplusplus.filter.savedfilter.SavedFilter;
 import com.nccgroup.loggerplusplus.filter.tag.Tag;
 import com.nccgroup.loggerplusplus.filter.tag.TagListener;
@@ -16,6 +17,7 @@ import java.awt.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Log4j2
 public class FilterLibraryController {
@@ -28,12 +30,15 @@ public class FilterLibraryController {
     private final ArrayList<ColorFilterListener> colorFilterListeners;
     private final HashMap<UUID, Tag> tagFilters;
     private final ArrayList<TagListener> tagListeners;
+    //Incremented whenever the snippets may have changed, so filters compiled against them know to recompile.
+    private final AtomicInteger snippetVersion;
 
     public FilterLibraryController(PreferencesController preferencesController) {
         this.preferences = preferencesController.getPreferences();
         this.listeners = new ArrayList<>();
         this.colorFilterListeners = new ArrayList<>();
         this.tagListeners = new ArrayList<>();
+        this.snippetVersion = new AtomicInteger();
         this.savedFilters = preferences.getSetting(Globals.PREF_SAVED_FILTERS);
         this.colorFilters = preferences.getSetting(Globals.PREF_COLOR_FILTERS);
         this.tagFilters = preferences.getSetting(Globals.PREF_TAG_FILTERS);
@@ -48,12 +53,17 @@ public class FilterLibraryController {
         return this.savedFilters;
     }
 
+    public int getSnippetVersion() {
+        return snippetVersion.get();
+    }
+
     public void addFilter(SavedFilter savedFilter){
         int index;
         synchronized (this.savedFilters) {
             this.savedFilters.add(savedFilter);
             index = this.savedFilters.size()-1;
         }
+        snippetVersion.incrementAndGet();
         for (FilterLibraryListener listener : this.listeners) {
             try{
                 listener.onFilterAdded(savedFilter, index);
@@ -70,6 +80,7 @@ public class FilterLibraryController {
             index = this.savedFilters.indexOf(filter);
             this.savedFilters.remove(index);
         }
+        snippetVersion.incrementAndGet();
         for (FilterLibraryListener listener : this.listeners) {
             try{
                 listener.onFilterRemoved(filter, index);
@@ -81,6 +92,7 @@ public class FilterLibraryController {
     }
 
     public void saveFilters(){
+        snippetVersion.incrementAndGet();
         this.preferences.setSetting(Globals.PREF_SAVED_FILTERS, savedFilters);
     }
 
@@ -210,7 +222,28 @@ public class FilterLibraryController {
         this.tagListeners.remove(listener);
     }
 
+    /**
+     * Check the color filters and tags using a snippet can still use it, as they cannot use relative times.
+     */
+    public void checkSnippetUsers(SavedFilter savedFilter) throws ParseException {
+        String snippet = savedFilter.getName().toUpperCase();
+        for (TableColorRule tableColorRule : this.getColorFilters().values()) {
+            FilterExpression expression = tableColorRule.getFilterExpression();
+            if(expression != null && expression.getSnippetDependencies().contains(snippet)){
+                expression.checkNoRelativeTime();
+            }
+        }
+
+        for (Tag tag : this.getTags().values()) {
+            FilterExpression expression = tag.getFilterExpression();
+            if(expression != null && expression.getSnippetDependencies().contains(snippet)){
+                expression.checkNoRelativeTime();
+            }
+        }
+    }
+
     public void propagateChangesToSnippetUsers(SavedFilter savedFilter) {
+        snippetVersion.incrementAndGet();
         String snippet = savedFilter.getName();
         for (TableColorRule tableColorRule : this.getColorFilters().values()) {
             if(tableColorRule.getFilterExpression().getSnippetDependencies().contains(snippet)){
@@ -70,8 +70,15 @@ public class FilterLibraryTableModel extends AbstractTableModel implements Filte
             }
         }
         if(column == 1){
+            String previousFilter = savedFilter.getFilterString();
             try{
                 savedFilter.parseAndSetFilter((String) value);
+                try {
+                    controller.checkSnippetUsers(savedFilter);
+                }catch (ParseException e){
+                    savedFilter.parseAndSetFilter(previousFilter);
+                    throw e;
+                }
                 controller.propagateChangesToSnippetUsers(savedFilter);
             }catch (ParseException e){
                 //Not a valid filter...
@@ -91,6 +98,12 @@ public class FilterLibraryTableModel extends AbstractTableModel implements Filte
             return;
         }
         if(col == 3){
+            try {
+                savedFilter.getFilterExpression().checkNoRelativeTime();
+            }catch (ParseException e){
+                JOptionPane.showMessageDialog(LoggerPlusPlus.instance.getMainViewController().getUiComponent(), e.getMessage(), "Filter Exception", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             controller.addColorFilter(savedFilter.getName(), savedFilter.getFilterExpression());
             ColorFilterDialog dialog = new ColorFilterDialog(LoggerPlusPlus.instance.getLibraryController());
             dialog.setVisible(true);
@@ -11,6 +11,8 @@ import com.nccgroup.loggerplusplus.preferences.PreferencesController;
 import com.nccgroup.loggerplusplus.util.Globals;
 import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -92,18 +94,19 @@ public class GrepperController {
         GrepResults grepResults = null;
         if (entry != null) {
             grepResults = new GrepResults(entry);
-            if (entry.getRequestBytes() != null && searchRequests) {
-                processMatches(grepResults, pattern, entry.getRequestBytes(), true);
+            //Stored messages are decoded straight from the body store, rather than copied out first.
+            if (entry.hasRequest() && searchRequests) {
+                processMatches(grepResults, pattern, entry.getRequestBuffer(), true);
             }
-            if (entry.getResponseBytes() != null && searchResponses) {
-                processMatches(grepResults, pattern, entry.getResponseBytes(), false);
+            if (entry.hasResponse() && searchResponses) {
+                processMatches(grepResults, pattern, entry.getResponseBuffer(), false);
             }
         }
         return grepResults;
     }
 
-    private void processMatches(GrepResults grepResults, Pattern pattern, byte[] content, boolean isRequest) {
-        final Matcher respMatcher = pattern.matcher(new String(content));
+    private void processMatches(GrepResults grepResults, Pattern pattern, ByteBuffer content, boolean isRequest) {
+        final Matcher respMatcher = pattern.matcher(Charset.defaultCharset().decode(content));
         while (respMatcher.find() && !Thread.currentThread().isInterrupted()) {
             String[] groups = new String[respMatcher.groupCount() + 1];
             for (int i = 0; i < groups.length; i++) {
@@ -0,0 +1,28 @@
+package com.nccgroup.loggerplusplus.logentry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A message body as a view over the raw message's bytes, either on the heap or in the {@link BodyStore}.
+ * The body's String form decodes each byte to the char of the same value, so the bytes can be
+ * searched in its place without decoding the whole body.
+ */
+public final class BodyBytes {
+    private final ByteBuffer buffer;
+
+    BodyBytes(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return The body, between the buffer's position and limit. The buffer may be shared, so must only
+     * be read with absolute gets, and must not be modified.
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int length() {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,193 @@
+package com.nccgroup.loggerplusplus.logentry;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Shared cache for the decoded forms of request and response messages, e.g. the body as a String.
+ * <p>
+ * Filters, the table, grepper and exporters all read the same bodies repeatedly, and each read
+ * otherwise copies and decodes the whole message again. Values are keyed on the message object itself,
+ * which is immutable, so a new response for an entry simply misses the cache.
+ * Keys only weakly reference the message, so the cache never keeps a message alive once its entry is gone.
+ * The total size of cached values is held within a byte budget by evicting the least recently used.
+ */
+public class BodyCache {
+
+    public enum Kind {
+        REQUEST_BYTES, RESPONSE_BYTES, REQUEST_BODY, RESPONSE_BODY
+    }
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * Weakly references the message. Keys for lookups are never enqueued, and the caller holds the message
+     * for the duration of the lookup, so they compare equal to the stored key for the same message.
+     */
+    private static class Key extends WeakReference<Object> {
+        private final Kind kind;
+        private final int hash;
+
+        private Key(Object message, Kind kind, ReferenceQueue<Object> queue) {
+            super(message, queue);
+            this.kind = kind;
+            this.hash = System.identityHashCode(message) * 31 + kind.ordinal();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            Object message = get();
+            return message != null && message == other.get() && kind == other.kind;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Value {
+        private final Object value;
+        private final long weight;
+
+        private Value(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final LinkedHashMap<Key, Value> entries;
+    private final ReferenceQueue<Object> collectedMessages;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private long budget;
+    private long size;
+
+    /**
+     * @param budget The maximum total size of cached values, in bytes
+     */
+    public BodyCache(long budget) {
+        this.entries = new LinkedHashMap<>(256, 0.75f, true);
+        this.collectedMessages = new ReferenceQueue<>();
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.evictions = new AtomicLong(0);
+        this.budget = budget;
+    }
+
+    /**
+     * Get the cached value for a message, loading it if it is not cached.
+     * Cached arrays are shared between callers and must not be modified.
+     *
+     * @param message The request or response the value is derived from
+     * @param kind The form of the message being requested
+     * @param loader Computes the value on a miss. Called without holding the cache lock.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object message, Kind kind, Supplier<T> loader) {
+        Key key = new Key(message, kind, null);
+        synchronized (this) {
+            Value cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return (T) cached.value;
+            }
+        }
+        misses.incrementAndGet();
+
+        T value = loader.get();
+        long weight = weigh(value);
+        synchronized (this) {
+            //Values bigger than the whole budget would only flush everything else out.
+            if (weight > budget) return value;
+            expungeCollected();
+            Value previous = entries.put(new Key(message, kind, collectedMessages), new Value(value, weight));
+            if (previous != null) size -= previous.weight;
+            size += weight;
+            evictToBudget();
+        }
+        return value;
+    }
+
+    /**
+     * Drop every cached form of a message, e.g. once it has been moved elsewhere.
+     */
+    public synchronized void invalidate(Object message) {
+        if (message == null) return;
+        for (Kind kind : Kind.values()) {
+            Value removed = entries.remove(new Key(message, kind, null));
+            if (removed != null) size -= removed.weight;
+        }
+        expungeCollected();
+    }
+
+    /**
+     * Drop values whose message has been garbage collected, they can never be read again.
+     */
+    private void expungeCollected() {
+        Object collected;
+        while ((collected = collectedMessages.poll()) != null) {
+            //Cleared keys only equal themselves, so this finds exactly the stored key.
+            Value removed = entries.remove(collected);
+            if (removed != null) size -= removed.weight;
+        }
+    }
+
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        evictToBudget();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    private void evictToBudget() {
+        Iterator<Value> iterator = entries.values().iterator();
+        while (size > budget && iterator.hasNext()) {
+            size -= iterator.next().weight;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static long weigh(Object value) {
+        if (value instanceof byte[]) return ((byte[]) value).length + ENTRY_OVERHEAD;
+        //Strings may be stored as UTF-16, so assume the worst case.
+        if (value instanceof String) return 2L * ((String) value).length() + ENTRY_OVERHEAD;
+        return ENTRY_OVERHEAD;
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+}
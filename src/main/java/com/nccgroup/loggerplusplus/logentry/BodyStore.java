@@ -0,0 +1,190 @@
+package com.nccgroup.loggerplusplus.logentry;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store for raw request and response bytes, held in memory-mapped segment files
+ * outside of the Java heap. Once an entry has been processed its messages can be moved here,
+ * leaving only the extracted metadata and a {@link Location} on the heap.
+ * <p>
+ * Messages are released once their entries leave the table. A segment is deleted as soon as every
+ * message written to it has been released, and any left are deleted when the store is closed.
+ */
+@Log4j2
+public class BodyStore {
+
+    public static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Where a message was written. Reading it back does not require the caller to hold the store.
+     */
+    public static final class Location {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        private Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * @return A read only view of the stored bytes, backed directly by the mapped segment
+         */
+        public ByteBuffer buffer() {
+            return segment.slice(offset, length);
+        }
+
+        /**
+         * @return A copy of the stored bytes on the heap
+         */
+        public byte[] bytes() {
+            byte[] bytes = new byte[length];
+            buffer().get(bytes);
+            return bytes;
+        }
+
+        public int length() {
+            return length;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        //Messages written to the segment which have not been released yet.
+        private int live;
+
+        private Segment(Path path, int capacity) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        private int remaining() {
+            return buffer.capacity() - position;
+        }
+
+        private ByteBuffer slice(int offset, int length) {
+            //Duplicate so concurrent readers don't share a position.
+            ByteBuffer view = buffer.asReadOnlyBuffer();
+            view.position(offset).limit(offset + length);
+            return view.slice();
+        }
+    }
+
+    private final Path directory;
+    private final List<Segment> segments;
+    private Segment current;
+    private int segmentsCreated;
+    private long bytesStored;
+    private boolean closed;
+
+    public BodyStore() throws IOException {
+        this.directory = Files.createTempDirectory("loggerplusplus-bodies");
+        this.directory.toFile().deleteOnExit();
+        this.segments = new ArrayList<>();
+    }
+
+    /**
+     * Append a message to the store.
+     *
+     * @param bytes The raw message
+     * @return The location of the message, or null if it could not be stored and must be kept on the heap
+     */
+    public synchronized Location write(byte[] bytes) {
+        if (closed) return null;
+        try {
+            if (current == null || current.remaining() < bytes.length) {
+                //Messages bigger than a segment get one to themselves.
+                Segment previous = current;
+                current = newSegment(Math.max(SEGMENT_SIZE, bytes.length));
+                if (previous != null && previous.live == 0) reclaim(previous);
+            }
+            int offset = current.position;
+            ByteBuffer target = current.buffer.duplicate();
+            target.position(offset);
+            target.put(bytes);
+            current.position += bytes.length;
+            current.live++;
+            bytesStored += bytes.length;
+            return new Location(current, offset, bytes.length);
+        } catch (IOException e) {
+            log.error("Could not write to the body store, keeping message on the heap.", e);
+            return null;
+        }
+    }
+
+    private Segment newSegment(int capacity) throws IOException {
+        Path path = directory.resolve(String.format("segment-%d.bin", segmentsCreated++));
+        Segment segment = new Segment(path, capacity);
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * Release a message which will not be read again, e.g. once its entry has left the table.
+     * Each location must only be released once.
+     */
+    public synchronized void release(Location location) {
+        if (closed || location == null) return;
+        Segment segment = location.segment;
+        segment.live--;
+        bytesStored -= location.length;
+        //The current segment is still being written to, it's reclaimed when it fills up if still empty.
+        if (segment.live == 0 && segment != current) reclaim(segment);
+    }
+
+    private void reclaim(Segment segment) {
+        segments.remove(segment);
+        try {
+            //The file is deleted on close. Existing views stay readable until they are garbage collected.
+            segment.channel.close();
+        } catch (IOException e) {
+            log.error("Could not close body store segment " + segment.path, e);
+        }
+    }
+
+    public synchronized long getBytesStored() {
+        return bytesStored;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Release the segment files. Existing locations must not be read afterwards.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (Segment segment : segments) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                log.error("Could not close body store segment " + segment.path, e);
+            }
+        }
+        segments.clear();
+        current = null;
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            //Mapped segments may not be deletable until unmapped on some platforms. Left for deleteOnExit.
+        }
+    }
+}
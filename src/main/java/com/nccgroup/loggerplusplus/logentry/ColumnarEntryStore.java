@@ -0,0 +1,382 @@
+package com.nccgroup.loggerplusplus.logentry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Columnar storage for the entry fields the table shows, sorts and filters on most: tool, status, port,
+ * lengths, times, round trip time, MIME types and the low cardinality strings such as hostname and method.
+ * <p>
+ * Numbers, times and enums are held in primitive arrays, one per field, and strings as codes into a
+ * reference counted dictionary shared by the string columns. Entries hold these fields in a {@link Row}
+ * of their own until they are added to the table, then in a slot of the table's store, and are given
+ * a row of their own again when they leave it. See {@link LogEntry#attach} and {@link LogEntry#detach}.
+ * <p>
+ * Writes are made under the store's write lock. Reads are optimistic, the reading entry validates the
+ * stamp and that it is still attached after reading, and falls back to the read lock if either changed.
+ */
+public class ColumnarEntryStore {
+
+    enum IntColumn {TOOL, STATUS, PORT, RTT, REQUEST_BODY_LENGTH, RESPONSE_BODY_LENGTH, MIME_TYPE, INFERRED_MIME_TYPE}
+
+    enum LongColumn {REQUEST_TIME, RESPONSE_TIME}
+
+    enum StringColumn {
+        HOSTNAME(LogEntryField.HOSTNAME), HOST(LogEntryField.HOST), PROTOCOL(LogEntryField.PROTOCOL),
+        METHOD(LogEntryField.METHOD), REQUEST_HTTP_VERSION(LogEntryField.REQUEST_HTTP_VERSION),
+        RESPONSE_HTTP_VERSION(LogEntryField.RESPONSE_HTTP_VERSION), EXTENSION(LogEntryField.EXTENSION),
+        LISTENER_INTERFACE(LogEntryField.LISTENER_INTERFACE);
+
+        private static final Map<LogEntryField, StringColumn> BY_FIELD = new EnumMap<>(LogEntryField.class);
+
+        static {
+            for (StringColumn column : values()) BY_FIELD.put(column.field, column);
+        }
+
+        private final LogEntryField field;
+
+        StringColumn(LogEntryField field) {
+            this.field = field;
+        }
+
+        /**
+         * @return The column holding the field, or null if it isn't held in a string column
+         */
+        static StringColumn of(LogEntryField field) {
+            return BY_FIELD.get(field);
+        }
+    }
+
+    private static final IntColumn[] INT_COLUMNS = IntColumn.values();
+    private static final LongColumn[] LONG_COLUMNS = LongColumn.values();
+    private static final StringColumn[] STRING_COLUMNS = StringColumn.values();
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_CODE = -1;
+    private static final int EMPTY_FOLDED_CODE = foldedCodeOf("");
+
+    /**
+     * The columns of a single entry which is not in a store.
+     */
+    static final class Row {
+        private final int[] ints = new int[INT_COLUMNS.length];
+        private final long[] longs = new long[LONG_COLUMNS.length];
+        private final String[] strings = new String[STRING_COLUMNS.length];
+        //The field dictionary's case insensitive code of each string.
+        private final int[] foldedCodes = new int[STRING_COLUMNS.length];
+
+        Row() {
+            //Numbers start at -1 and strings empty, times at the zero epoch rather than null.
+            Arrays.fill(ints, -1);
+            Arrays.fill(strings, "");
+            Arrays.fill(foldedCodes, EMPTY_FOLDED_CODE);
+        }
+
+        int getInt(IntColumn column) {
+            return ints[column.ordinal()];
+        }
+
+        void setInt(IntColumn column, int value) {
+            ints[column.ordinal()] = value;
+        }
+
+        long getLong(LongColumn column) {
+            return longs[column.ordinal()];
+        }
+
+        void setLong(LongColumn column, long value) {
+            longs[column.ordinal()] = value;
+        }
+
+        String getString(StringColumn column) {
+            return strings[column.ordinal()];
+        }
+
+        int getFoldedCode(StringColumn column) {
+            return foldedCodes[column.ordinal()];
+        }
+
+        void setString(StringColumn column, String value) {
+            setString(column, value, foldedCodeOf(value));
+        }
+
+        private void setString(StringColumn column, String value, int foldedCode) {
+            strings[column.ordinal()] = value;
+            foldedCodes[column.ordinal()] = foldedCode;
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+
+    //Indexed by column ordinal, then slot.
+    private int[][] ints;
+    private long[][] longs;
+    private int[][] codes;
+    private int capacity;
+    //Slots below this have been used, those released since are reused first.
+    private int highWater;
+    private int[] freeSlots;
+    private int freeSlotCount;
+    private int size;
+
+    //Dictionary for the string columns. Codes are released once no slot refers to them.
+    private final HashMap<String, Integer> codesByValue;
+    private String[] values;
+    //The field dictionary's case insensitive code of each value, so rows don't have to look it up.
+    private int[] foldedCodes;
+    private int[] references;
+    private int[] freeCodes;
+    private int freeCodeCount;
+    private int nextCode;
+
+    public ColumnarEntryStore() {
+        this.codesByValue = new HashMap<>();
+        allocate();
+    }
+
+    /**
+     * Move the entries' columns into the store.
+     */
+    public void attach(List<LogEntry> entries) {
+        for (LogEntry entry : entries) entry.attach(this);
+    }
+
+    /**
+     * Give the entries back a row of their own, e.g. once they have left the table.
+     */
+    public void detach(List<LogEntry> entries) {
+        for (LogEntry entry : entries) entry.detach(this);
+    }
+
+    /**
+     * @return The number of entries attached to the store
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return The number of distinct strings held across the string columns
+     */
+    public int dictionarySize() {
+        long stamp = lock.readLock();
+        try {
+            return codesByValue.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copy a row into a newly allocated slot.
+     *
+     * @return The slot
+     */
+    int add(Row row) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : nextSlot();
+            for (IntColumn column : INT_COLUMNS) ints[column.ordinal()][slot] = row.getInt(column);
+            for (LongColumn column : LONG_COLUMNS) longs[column.ordinal()][slot] = row.getLong(column);
+            for (StringColumn column : STRING_COLUMNS) codes[column.ordinal()][slot] = intern(row.getString(column));
+            size++;
+            return slot;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return A copy of the slot's columns
+     */
+    Row copy(int slot) {
+        Row row = new Row();
+        long stamp = lock.readLock();
+        try {
+            for (IntColumn column : INT_COLUMNS) row.setInt(column, ints[column.ordinal()][slot]);
+            for (LongColumn column : LONG_COLUMNS) row.setLong(column, longs[column.ordinal()][slot]);
+            for (StringColumn column : STRING_COLUMNS) {
+                int code = codes[column.ordinal()][slot];
+                row.setString(column, decode(code), code == NO_CODE ? FieldDictionary.NO_CODE : foldedCodes[code]);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return row;
+    }
+
+    /**
+     * Free a slot for reuse. Its entry must already have stopped reading from it.
+     */
+    void release(int slot) {
+        long stamp = lock.writeLock();
+        try {
+            for (StringColumn column : STRING_COLUMNS) releaseCode(codes[column.ordinal()][slot]);
+            size--;
+            if (size == 0) {
+                //Give back the memory of a table which has been cleared.
+                codesByValue.clear();
+                allocate();
+            } else {
+                if (freeSlotCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+                freeSlots[freeSlotCount++] = slot;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void setInt(int slot, IntColumn column, int value) {
+        long stamp = lock.writeLock();
+        try {
+            ints[column.ordinal()][slot] = value;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void setLong(int slot, LongColumn column, long value) {
+        long stamp = lock.writeLock();
+        try {
+            longs[column.ordinal()][slot] = value;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void setString(int slot, StringColumn column, String value) {
+        long stamp = lock.writeLock();
+        try {
+            int[] columnCodes = codes[column.ordinal()];
+            int previous = columnCodes[slot];
+            columnCodes[slot] = intern(value);
+            releaseCode(previous);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /*
+     * Reads. Without the read lock the values may be inconsistent, or from another entry which has since
+     * taken the slot, so they must only be used once the stamp has been validated.
+     */
+
+    long tryOptimisticRead() {
+        return lock.tryOptimisticRead();
+    }
+
+    boolean validate(long stamp) {
+        return lock.validate(stamp);
+    }
+
+    long readLock() {
+        return lock.readLock();
+    }
+
+    void unlockRead(long stamp) {
+        lock.unlockRead(stamp);
+    }
+
+    int getInt(int slot, IntColumn column) {
+        int[] values = ints[column.ordinal()];
+        return slot < values.length ? values[slot] : -1;
+    }
+
+    long getLong(int slot, LongColumn column) {
+        long[] values = longs[column.ordinal()];
+        return slot < values.length ? values[slot] : -1;
+    }
+
+    String getString(int slot, StringColumn column) {
+        int[] columnCodes = codes[column.ordinal()];
+        if (slot >= columnCodes.length) return null;
+        int code = columnCodes[slot];
+        String[] values = this.values;
+        return code >= 0 && code < values.length ? values[code] : null;
+    }
+
+    int getFoldedCode(int slot, StringColumn column) {
+        int[] columnCodes = codes[column.ordinal()];
+        if (slot >= columnCodes.length) return FieldDictionary.NO_CODE;
+        int code = columnCodes[slot];
+        int[] foldedCodes = this.foldedCodes;
+        return code >= 0 && code < foldedCodes.length ? foldedCodes[code] : FieldDictionary.NO_CODE;
+    }
+
+    private int nextSlot() {
+        if (highWater == capacity) grow();
+        return highWater++;
+    }
+
+    private int intern(String value) {
+        if (value == null) return NO_CODE;
+        Integer code = codesByValue.get(value);
+        if (code == null) {
+            if (freeCodeCount > 0) {
+                code = freeCodes[--freeCodeCount];
+            } else {
+                if (nextCode == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                    foldedCodes = Arrays.copyOf(foldedCodes, foldedCodes.length * 2);
+                    references = Arrays.copyOf(references, references.length * 2);
+                }
+                code = nextCode++;
+            }
+            values[code] = value;
+            foldedCodes[code] = foldedCodeOf(value);
+            codesByValue.put(value, code);
+        }
+        references[code]++;
+        return code;
+    }
+
+    private String decode(int code) {
+        return code == NO_CODE ? null : values[code];
+    }
+
+    private static int foldedCodeOf(String value) {
+        //Values have usually been encoded by the field dictionary already, so look them up before folding them.
+        int code = LogEntry.FIELD_DICTIONARY.codeOf(value);
+        return code != FieldDictionary.NO_CODE ? code : LogEntry.FIELD_DICTIONARY.getFoldedCode(value);
+    }
+
+    private void releaseCode(int code) {
+        if (code == NO_CODE || --references[code] > 0) return;
+        codesByValue.remove(values[code]);
+        values[code] = null;
+        if (freeCodeCount == freeCodes.length) freeCodes = Arrays.copyOf(freeCodes, freeCodes.length * 2);
+        freeCodes[freeCodeCount++] = code;
+    }
+
+    private void grow() {
+        capacity *= 2;
+        for (int i = 0; i < ints.length; i++) ints[i] = Arrays.copyOf(ints[i], capacity);
+        for (int i = 0; i < longs.length; i++) longs[i] = Arrays.copyOf(longs[i], capacity);
+        for (int i = 0; i < codes.length; i++) codes[i] = Arrays.copyOf(codes[i], capacity);
+    }
+
+    private void allocate() {
+        capacity = INITIAL_CAPACITY;
+        ints = new int[INT_COLUMNS.length][capacity];
+        longs = new long[LONG_COLUMNS.length][capacity];
+        codes = new int[STRING_COLUMNS.length][capacity];
+        highWater = 0;
+        freeSlots = new int[INITIAL_CAPACITY];
+        freeSlotCount = 0;
+        values = new String[64];
+        foldedCodes = new int[64];
+        references = new int[64];
+        freeCodes = new int[64];
+        freeCodeCount = 0;
+        nextCode = 0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.nccgroup.loggerplusplus.logentry;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded, thread safe dictionary for low cardinality entry fields such as hostname, method and HTTP version.
+ * <p>
+ * Encoding a value returns a single canonical String instance for it, so the thousands of entries sharing
+ * a value also share one String. Each canonical value also has a code identifying it ignoring case, letting
+ * the case insensitive comparisons filters use for these fields compare two ints rather than two Strings.
+ * <p>
+ * Once the dictionary is full, new values are returned as given and have no code. Values which are not
+ * plain ASCII are still shared, but have no code, so comparisons on them fall back to comparing Strings.
+ */
+public class FieldDictionary {
+
+    public static final int NO_CODE = -1;
+
+    private static final class Entry {
+        private final String value;
+        private final int foldedCode;
+
+        private Entry(String value, int foldedCode) {
+            this.value = value;
+            this.foldedCode = foldedCode;
+        }
+    }
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final ConcurrentHashMap<String, Integer> foldedCodes;
+    private final AtomicInteger nextCode;
+
+    public FieldDictionary(int maximumSize) {
+        this.maximumSize = maximumSize;
+        this.entries = new ConcurrentHashMap<>();
+        this.foldedCodes = new ConcurrentHashMap<>();
+        this.nextCode = new AtomicInteger(0);
+    }
+
+    /**
+     * @return The canonical instance of the value, or the value itself if the dictionary is full
+     */
+    public String encode(String value) {
+        if (value == null) return null;
+        Entry entry = entries.get(value);
+        if (entry != null) return entry.value;
+        //The bound is approximate under contention, it only has to stop unbounded growth.
+        if (entries.size() >= maximumSize) return value;
+        int foldedCode = getFoldedCode(value);
+        return entries.computeIfAbsent(value, v -> new Entry(v, foldedCode)).value;
+    }
+
+    /**
+     * Get the case insensitive code for a value which has already been encoded.
+     * Cheap for canonical instances, as their hash is cached and equality short circuits on identity.
+     *
+     * @return The code, or {@link #NO_CODE} if the value is not in the dictionary or has no code
+     */
+    public int codeOf(String value) {
+        if (value == null) return NO_CODE;
+        Entry entry = entries.get(value);
+        return entry != null ? entry.foldedCode : NO_CODE;
+    }
+
+    /**
+     * Get the case insensitive code for any value, e.g. a filter constant, assigning one if needed.
+     *
+     * @return The code, or {@link #NO_CODE} if the value is not plain ASCII, or has no code and the dictionary is full
+     */
+    public int getFoldedCode(String value) {
+        //Only ASCII folds the same way as equalsIgnoreCase when lower casing the whole string.
+        if (value == null || !isAscii(value)) return NO_CODE;
+        String folded = value.toLowerCase(Locale.ROOT);
+        Integer code = foldedCodes.get(folded);
+        if (code != null) return code;
+        if (foldedCodes.size() >= maximumSize) return NO_CODE;
+        return foldedCodes.computeIfAbsent(folded, f -> nextCode.getAndIncrement());
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0x7F) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drop the canonical values, e.g. once the entries using them have been cleared.
+     * Codes are kept, so filters which resolved a constant's code before the clear still compare correctly.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,24 @@
+package com.nccgroup.loggerplusplus.logentry;
+
+/**
+ * Something filters can read entry field values from. Usually the {@link LogEntry} itself.
+ */
+public interface FieldValueSource {
+
+    Object getValueByKey(LogEntryField field);
+
+    /**
+     * @return The raw bytes of a body field, or null if the field is not a body or is only available as a String
+     */
+    default BodyBytes getBodyBytes(LogEntryField field) {
+        return null;
+    }
+
+    /**
+     * @return The case insensitive {@link FieldDictionary} code of the value of one of {@link LogEntry#DICTIONARY_FIELDS},
+     * or {@link FieldDictionary#NO_CODE} if the value has none, or the source doesn't hold codes
+     */
+    default int getDictionaryCode(LogEntryField field) {
+        return FieldDictionary.NO_CODE;
+    }
+}
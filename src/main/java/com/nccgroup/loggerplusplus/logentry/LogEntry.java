@@ -13,9 +13,9 @@
 
 package com.nccgroup.loggerplusplus.logentry;
 
+import burp.api.montoya.core.ByteArray;
 import burp.api.montoya.core.ToolType;
 import burp.api.montoya.http.HttpService;
-import burp.api.montoya.http.message.Cookie;
 import burp.api.montoya.http.message.HttpHeader;
 import burp.api.montoya.http.message.MimeType;
 import burp.api.montoya.http.message.params.HttpParameter;
@@ -25,6 +25,9 @@ import burp.api.montoya.http.message.responses.HttpResponse;
 import com.nccgroup.loggerplusplus.LoggerPlusPlus;
 import com.nccgroup.loggerplusplus.filter.colorfilter.TableColorRule;
 import com.nccgroup.loggerplusplus.filter.tag.Tag;
+import com.nccgroup.loggerplusplus.logentry.ColumnarEntryStore.IntColumn;
+import com.nccgroup.loggerplusplus.logentry.ColumnarEntryStore.LongColumn;
+import com.nccgroup.loggerplusplus.logentry.ColumnarEntryStore.StringColumn;
 import com.nccgroup.loggerplusplus.logview.processor.LogProcessor;
 import com.nccgroup.loggerplusplus.reflection.ReflectionController;
 import com.nccgroup.loggerplusplus.util.Globals;
@@ -36,8 +39,11 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 
@@ -45,48 +51,71 @@ import static com.nccgroup.loggerplusplus.LoggerPlusPlus.montoya;
 
 @Getter
 @Setter
-public class LogEntry {
+public class LogEntry implements FieldValueSource {
+
+	/**
+	 * Fields which are expensive to compute, and so are only computed when first read.
+	 */
+	public static final Set<LogEntryField> LAZY_FIELDS = Collections.unmodifiableSet(EnumSet.of(
+			LogEntryField.PARAMETERS, LogEntryField.PARAMETER_COUNT,
+			LogEntryField.TITLE, LogEntryField.NEW_COOKIES, LogEntryField.HAS_SET_COOKIES,
+			LogEntryField.REFLECTED_PARAMS, LogEntryField.REFLECTION_COUNT, LogEntryField.RESPONSE_HASH));
+
+	/**
+	 * Low cardinality fields whose values are shared between entries through {@link #FIELD_DICTIONARY}.
+	 * Each entry holds the dictionary's code of its values alongside them, see {@link #getDictionaryCode}.
+	 * Content types are left out, as parameters such as multipart boundaries make most values unique.
+	 */
+	public static final Set<LogEntryField> DICTIONARY_FIELDS = Collections.unmodifiableSet(EnumSet.of(
+			LogEntryField.HOSTNAME, LogEntryField.HOST, LogEntryField.PROTOCOL, LogEntryField.METHOD,
+			LogEntryField.REQUEST_HTTP_VERSION, LogEntryField.RESPONSE_HTTP_VERSION,
+			LogEntryField.EXTENSION, LogEntryField.LISTENER_INTERFACE));
+
+	public static final FieldDictionary FIELD_DICTIONARY = new FieldDictionary(1 << 16);
 
 	Status previousStatus;
 	Status status = Status.UNPROCESSED;
 
 	@Setter(AccessLevel.NONE)
-	private HttpRequest request;
+	private volatile HttpRequest request;
 	@Setter(AccessLevel.NONE)
-	private HttpResponse response;
+	private volatile HttpResponse response;
+	//Set once the messages have been moved off the heap into the body store. See storeBodies.
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private volatile BodyStore.Location storedRequest;
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private volatile BodyStore.Location storedResponse;
+	//Set once the entry has left the table and its stored messages have been released. See releaseBodies.
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private boolean bodiesReleased;
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private HttpService httpService;
+	//The fields the table shows, sorts and filters on most, such as tool, status, hostname and times, are held in
+	//columns: in a row of the entry's own, until it is added to the table, then in a slot of the table's store.
+	//Read and written through the accessors below. See ColumnarEntryStore.
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private volatile ColumnarEntryStore.Row row;
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private volatile ColumnarEntryStore store;
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private int slot;
 
 	private Integer identifier;
-	private ToolType tool;
-	private String hostname = "";
-	private String host = "";
-	private String method = "";
 	private String urlString;
 	private URL url;
 	private boolean params = false;
-	private Short responseStatus = -1;
 	private String responseStatusText = "";
-	private String responseHttpVersion = "";
 	private boolean hasBodyParam = false;
 	private boolean hasCookieParam = false;
-	private String title = "";
+	//Expensive fields are computed on first access, null until then. See the lazy getters below.
+	private volatile String title;
 	private String comment;
-	private List<String> newCookies = new ArrayList<>();
+	private volatile List<String> newCookies;
 	private String sentCookies = "";
-	private String listenerInterface = "";
 	private boolean isSSL = false;
-	private String urlExtension = "";
 	private String referrerURL = "";
-	private String requestHttpVersion = "";
 	private String requestContentType = "";
-	private String protocol = "";
-	private short targetPort = -1;
-	private int requestBodyLength = -1;
 	private String clientIP = "";
-	private boolean hasSetCookies = false;
-	private String formattedResponseTime = "";
-	private MimeType responseMimeType;
-	private MimeType responseInferredMimeType;
-	private int responseBodyLength = -1;
 	private String responseContentType = "";
 	private boolean complete = false;
 	private CookieJarStatus usesCookieJar = CookieJarStatus.NO;
@@ -97,24 +126,24 @@ public class LogEntry {
 	// private String[] regexAllResp = {"","","","",""};
 
 	private List<UUID> matchingColorFilters;
+	//Highest priority of the matching color rules, kept up to date as rules are tested so rendering doesn't have to find it.
+	@Setter(AccessLevel.NONE)
+	private volatile TableColorRule colorRule;
 	private List<Tag> matchingTags;
-	private String formattedRequestTime;
-	private Date responseDateTime = new Date(0); //Zero epoch dates to prevent null. Response date pulled from response headers
-	private Date requestDateTime = new Date(0); //Zero epoch dates to prevent null. Response date pulled from response headers
-	private int requestResponseDelay = -1;
 	private List<HttpHeader> responseHeaders;
 	private List<HttpHeader> requestHeaders;
-	private List<String> parameters;
-	private List<String> reflectedParameters;
+	private volatile List<String> parameters;
+	private volatile List<String> reflectedParameters;
 
 	private LogEntry() {
 		this.matchingColorFilters = Collections.synchronizedList(new ArrayList<>());
 		this.matchingTags = Collections.synchronizedList(new ArrayList<>());
+		this.row = new ColumnarEntryStore.Row();
 	}
 
 	public LogEntry(ToolType tool, HttpRequest request) {
 		this();
-		this.tool = tool;
+		setTool(tool);
 		this.request = request;
 	}
 
@@ -143,7 +172,7 @@ public class LogEntry {
 				//fall through to process response
 			}
 			case AWAITING_RESPONSE: {
-				if (this.response == null) {
+				if (!hasResponse()) {
 					this.status = Status.AWAITING_RESPONSE;
 					return false;
 				}
@@ -161,6 +190,23 @@ public class LogEntry {
 		}
 	}
 
+	/**
+	 * Process the entry, then compute any of the given lazy fields that are now available,
+	 * so they are ready before anything reads them, e.g. the table on the EDT.
+	 *
+	 * @param prefetchFields Fields to compute now, fields which are not lazily computed are ignored
+	 * @return If the entry is complete
+	 */
+	public boolean process(Set<LogEntryField> prefetchFields) {
+		boolean complete = process();
+		for (LogEntryField field : prefetchFields) {
+			if (!LAZY_FIELDS.contains(field)) continue;
+			if (field.getFieldGroup() == FieldGroup.RESPONSE && !hasResponse()) continue;
+			getValueByKey(field);
+		}
+		return complete;
+	}
+
 	public void reprocess() {
 		this.status = Status.UNPROCESSED;
 		process();
@@ -175,30 +221,32 @@ public class LogEntry {
 	}
 
 	private Status processRequest() {
-
+		HttpRequest request = getRequest();
 
 		requestHeaders = new ArrayList<>(request.headers());
 
-		this.requestHttpVersion = request.httpVersion();
-
-		this.parameters = request.parameters().stream()
-				.filter(param -> param.type() != HttpParameterType.COOKIE)
-				.map(HttpParameter::name)
-				.collect(Collectors.toList());
+		setRequestHttpVersion(FIELD_DICTIONARY.encode(request.httpVersion()));
+		this.parameters = null;
+		this.usesCookieJar = CookieJarStatus.NO;
 
 		this.urlString = request.url();
-		this.hostname = this.request.httpService().host();
-		this.protocol = this.request.httpService().secure() ? "https" : "http";
-		this.isSSL = this.request.httpService().secure();
-		this.targetPort = (short) this.request.httpService().port();
-
-		boolean isDefaultPort = (this.protocol.equals("https") && this.targetPort == 443)
-				|| (this.protocol.equals("http") && this.targetPort == 80);
-
-		this.host = this.protocol + "://" + this.hostname + (isDefaultPort ? "" : ":" + this.targetPort);
-
-		this.method = request.method();
-		this.requestBodyLength = this.getRequestBytes().length - request.bodyOffset();
+		this.httpService = request.httpService();
+		String hostname = FIELD_DICTIONARY.encode(httpService.host());
+		String protocol = FIELD_DICTIONARY.encode(httpService.secure() ? "https" : "http");
+		short targetPort = (short) httpService.port();
+		setHostname(hostname);
+		setProtocol(protocol);
+		this.isSSL = httpService.secure();
+		setTargetPort(targetPort);
+
+		boolean isDefaultPort = (protocol.equals("https") && targetPort == 443)
+				|| (protocol.equals("http") && targetPort == 80);
+
+		setHost(FIELD_DICTIONARY.encode(protocol + "://" + hostname + (isDefaultPort ? "" : ":" + targetPort)));
+
+		setMethod(FIELD_DICTIONARY.encode(request.method()));
+		int requestBodyLength = request.body().length();
+		setRequestBodyLength(requestBodyLength);
 		this.hasBodyParam = requestBodyLength > 0;
 
 		try {
@@ -210,7 +258,7 @@ public class LogEntry {
 			tempPath = tempPath.substring(tempPath.lastIndexOf("/"));
 			int tempPathDotLocation = tempPath.lastIndexOf(".");
 			if (tempPathDotLocation >= 0) {
-				this.urlExtension = tempPath.substring(tempPathDotLocation + 1);
+				setUrlExtension(FIELD_DICTIONARY.encode(tempPath.substring(tempPathDotLocation + 1)));
 			}
 			this.params = url.getQuery() != null || this.hasBodyParam;
 		} catch (MalformedURLException ignored) {}
@@ -222,31 +270,6 @@ public class LogEntry {
 				if (!this.sentCookies.isEmpty()) {
 					this.hasCookieParam = true;
 					this.sentCookies += ";"; // we need to ad this to search it in cookie Jar!
-
-					// Check to see if it uses cookie Jars!
-					List<Cookie> cookiesInJar = montoya.http().cookieJar().cookies();
-					boolean oneNotMatched = false;
-					boolean anyParamMatched = false;
-
-					for (Cookie cookieItem : cookiesInJar) {
-						if (cookieItem.domain().equals(this.hostname)) {
-							// now we want to see if any of these cookies have been set here!
-							String currentCookieJarParam = cookieItem.name() + "=" + cookieItem.value() + ";";
-							if (this.sentCookies.contains(currentCookieJarParam)) {
-								anyParamMatched = true;
-							} else {
-								oneNotMatched = true;
-							}
-						}
-						if (anyParamMatched && oneNotMatched) {
-							break; // we do not need to analyse it more!
-						}
-					}
-					if (oneNotMatched && anyParamMatched) {
-						this.usesCookieJar = CookieJarStatus.PARTIALLY;
-					} else if (!oneNotMatched && anyParamMatched) {
-						this.usesCookieJar = CookieJarStatus.YES;
-					}
 				}
 			} else if (header.name().equalsIgnoreCase("referer")) {
 				this.referrerURL = header.value();
@@ -257,6 +280,13 @@ public class LogEntry {
 			}
 		}
 
+		if (this.hasCookieParam) {
+			// Check to see if it uses cookie Jars! Classified now, against the jar as it was when the request was captured.
+			// The jar is read through a periodically refreshed, per-domain snapshot, so this is cheap.
+			this.usesCookieJar = LoggerPlusPlus.instance.getLogProcessor().getCookieJarSnapshot()
+					.classify(hostname, this.sentCookies);
+		}
+
 		return Status.AWAITING_RESPONSE;
 
 	}
@@ -268,23 +298,28 @@ public class LogEntry {
 	 * @param arrivalTime
 	 */
 	public void addResponse(HttpResponse requestResponse, Date arrivalTime) {
-		this.responseDateTime = arrivalTime;
+		setResponseDateTime(arrivalTime);
 
 		//IHttpRequestResponse objects received by the proxy listener do not contain the latest request.
 		//So we must store the content separately.
 		this.response = requestResponse;
+		this.storedResponse = null;
 //		this.setComment(requestResponse.getComment()); //Update the comment with the current comment
 	}
 
 	private Status processResponse() {
-		reflectedParameters = new ArrayList<>();
+		HttpResponse response = getResponse();
+		this.title = null;
+		this.newCookies = null;
+		this.reflectedParameters = null;
+		this.responseHash = null;
 //		IResponseInfo tempAnalyzedResp = LoggerPlusPlus.montoya.getHelpers()
 //				.analyzeResponse(response);
 
-		this.responseStatus = response.statusCode();
-		this.responseBodyLength = response.body().length();
-		this.responseMimeType = response.statedMimeType();
-		this.responseInferredMimeType = response.inferredMimeType();
+		setResponseStatus(response.statusCode());
+		setResponseBodyLength(response.body().length());
+		setResponseMimeType(response.statedMimeType());
+		setResponseInferredMimeType(response.inferredMimeType());
 
 		/**************************************
 		 ************HEADER PROCESSING*********
@@ -296,106 +331,600 @@ public class LogEntry {
 					return s;
 				}, () -> new TreeMap<>(String.CASE_INSENSITIVE_ORDER)));
 
-		responseHeaders = response.headers();
+		responseHeaders = new ArrayList<>(response.headers());
 
 		if (headers.containsKey("Location")) {
 			this.redirectURL = headers.get("Location");
 		}
 
 		this.responseStatusText = response.reasonPhrase();
-		this.responseHttpVersion = response.httpVersion();
+		setResponseHttpVersion(FIELD_DICTIONARY.encode(response.httpVersion()));
 
 
 		if (headers.containsKey("content-type")) {
 			this.responseContentType = headers.get("content-type");
 		}
 
-		//Cookies
-		this.newCookies = response.cookies().stream().map(cookie -> String.format("%s=%s", cookie.name(), cookie.value())).collect(Collectors.toList());
-		this.hasSetCookies = !newCookies.isEmpty();
-
-
-		if (this.responseDateTime == null) {
+		Date responseDateTime = getResponseDateTime();
+		if (responseDateTime == null) {
 			// If it didn't have an arrival time set, parse the response for it.
 			if (headers.get("date") != null && !StringUtils.isBlank(headers.get("date"))) {
 				try {
 					synchronized (LogProcessor.SERVER_DATE_FORMAT) {
-						this.responseDateTime = LogProcessor.SERVER_DATE_FORMAT.parse(headers.get("date"));
+						responseDateTime = LogProcessor.SERVER_DATE_FORMAT.parse(headers.get("date"));
 					}
 				} catch (ParseException e) {
-					this.responseDateTime = null;
+					responseDateTime = null;
 				}
 			} else {
 				// No date header...
-				this.responseDateTime = null;
+				responseDateTime = null;
 			}
-		}
-		if (responseDateTime != null) {
-			this.formattedResponseTime = LogProcessor.LOGGER_DATE_FORMAT.format(responseDateTime);
-		} else {
-			this.formattedResponseTime = "";
+			setResponseDateTime(responseDateTime);
 		}
 
+		Date requestDateTime = getRequestDateTime();
 		if (requestDateTime != null && responseDateTime != null) {
-			this.requestResponseDelay = (int) (responseDateTime.getTime() - requestDateTime.getTime());
+			setRequestResponseDelay((int) (responseDateTime.getTime() - requestDateTime.getTime()));
 		}
 
-		/**************************************
-		 *************BODY PROCESSING**********
-		 **************************************/
+		this.complete = true;
 
-		Long maxRespSize = ((Integer) LoggerPlusPlus.instance.getPreferencesController().getPreferences().getSetting(Globals.PREF_MAX_RESP_SIZE)) * 1000000L;
-		int bodyOffset = response.bodyOffset();
-		if (responseBodyLength < maxRespSize) {
+		return Status.PROCESSED;
+	}
+
+	/*************************************
+	 * Lazily computed fields.
+	 * These are only computed when first read, by a column, filter or exporter which needs them.
+	 * Computation is idempotent, so concurrent first reads may both compute the value, but will agree.
+	 *************************************/
+
+	public List<String> getParameters() {
+		List<String> parameters = this.parameters;
+		if (parameters == null && hasRequest()) {
+			parameters = getRequest().parameters().stream()
+					.filter(param -> param.type() != HttpParameterType.COOKIE)
+					.map(HttpParameter::name)
+					.collect(Collectors.toList());
+			this.parameters = parameters;
+		}
+		return parameters;
+	}
+
+	public String getTitle() {
+		String title = this.title;
+		if (title == null) {
+			if (!hasResponse()) return "";
+			title = "";
 			//Only title match HTML files. Prevents expensive regex running on e.g. binary downloads.
-			if (this.responseInferredMimeType == MimeType.HTML) {
-				Matcher titleMatcher = Globals.HTML_TITLE_PATTERN.matcher(response.bodyToString());
+			if (getResponseInferredMimeType() == MimeType.HTML && isWithinMaxResponseSize()) {
+				Matcher titleMatcher = Globals.HTML_TITLE_PATTERN.matcher(getResponseBodyString());
 				if (titleMatcher.find()) {
-					this.title = titleMatcher.group(1);
+					title = titleMatcher.group(1);
 				}
 			}
+			this.title = title;
+		}
+		return title;
+	}
 
-			ReflectionController reflectionController = LoggerPlusPlus.instance.getReflectionController();
-			reflectedParameters = request.parameters().parallelStream()
-					.filter(parameter -> !reflectionController.isParameterFiltered(parameter) && reflectionController.validReflection(response.bodyToString(), parameter))
-					.map(HttpParameter::name).collect(Collectors.toList());
+	public List<String> getNewCookies() {
+		List<String> newCookies = this.newCookies;
+		if (newCookies == null) {
+			if (!hasResponse()) return new ArrayList<>();
+			newCookies = getResponse().cookies().stream().map(cookie -> String.format("%s=%s", cookie.name(), cookie.value())).collect(Collectors.toList());
+			this.newCookies = newCookies;
+		}
+		return newCookies;
+	}
 
-		} else {
-			//Just look for reflections in the headers.
+	public boolean isHasSetCookies() {
+		return !getNewCookies().isEmpty();
+	}
+
+	public List<String> getReflectedParameters() {
+		List<String> reflectedParameters = this.reflectedParameters;
+		if (reflectedParameters == null) {
+			if (!hasResponse()) return new ArrayList<>();
+			//Searching bodies above the maximum response size is too expensive, just look for reflections in the headers.
+			String searchText = isWithinMaxResponseSize() ? getResponseBodyString() : getResponseHeadersString();
 			ReflectionController reflectionController = LoggerPlusPlus.instance.getReflectionController();
-			reflectedParameters = request.parameters().parallelStream()
-					.filter(parameter -> !reflectionController.isParameterFiltered(parameter)
-							&& reflectionController.validReflection(response.bodyToString(), parameter))
-					.map(HttpParameter::name).collect(Collectors.toList());
-
-			//Trim the response down to a maximum size, but at least keep the headers!
-			//TODO Fix response trimming?
-//			this.response = (new String(this.response, 0, bodyOffset) + "Response body trimmed by Logger++. To prevent this, increase \"Maximum Response Size\" in the Logger++ options.").getBytes(StandardCharsets.UTF_8);
+			reflectedParameters = reflectionController.findReflectedParameters(searchText, getRequest().parameters());
+			this.reflectedParameters = reflectedParameters;
 		}
+		return reflectedParameters;
+	}
 
-		this.complete = true;
+	private boolean isWithinMaxResponseSize() {
+		Long maxRespSize = ((Integer) LoggerPlusPlus.instance.getPreferencesController().getPreferences().getSetting(Globals.PREF_MAX_RESP_SIZE)) * 1000000L;
+		return getResponseBodyLength() < maxRespSize;
+	}
 
-		return Status.PROCESSED;
+	public HttpRequest getRequest() {
+		HttpRequest request = this.request;
+		if (request != null) return request;
+		BodyStore.Location storedRequest = this.storedRequest;
+		if (storedRequest == null) return null;
+		//Rebuilt from the cached bytes, so repeated reads don't copy out of the store each time.
+		return HttpRequest.httpRequest(httpService, ByteArray.byteArray(getRequestBytes()));
+	}
+
+	public HttpResponse getResponse() {
+		HttpResponse response = this.response;
+		if (response != null) return response;
+		BodyStore.Location storedResponse = this.storedResponse;
+		if (storedResponse == null) return null;
+		return HttpResponse.httpResponse(ByteArray.byteArray(getResponseBytes()));
 	}
 
+	public boolean hasRequest() {
+		return request != null || storedRequest != null;
+	}
+
+	public boolean hasResponse() {
+		return response != null || storedResponse != null;
+	}
+
+	/**
+	 * Move the raw messages into the body store, leaving only the extracted metadata on the heap.
+	 * The messages are rebuilt from the store when next read.
+	 * Should only be called once the entry has been processed and exported.
+	 */
+	public synchronized void storeBodies(BodyStore bodyStore, BodyCache bodyCache) {
+		//Already out of the table, anything written now would never be released.
+		if (bodiesReleased) return;
+		HttpRequest request = this.request;
+		if (request != null) {
+			BodyStore.Location location = bodyStore.write(getRequestBytes());
+			if (location != null) {
+				//Publish the location before dropping the message, so readers always see one of them.
+				this.storedRequest = location;
+				this.request = null;
+				bodyCache.invalidate(request);
+			}
+		}
+		HttpResponse response = this.response;
+		if (response != null) {
+			BodyStore.Location location = bodyStore.write(getResponseBytes());
+			if (location != null) {
+				this.storedResponse = location;
+				this.response = null;
+				bodyCache.invalidate(response);
+			}
+		}
+	}
+
+	/**
+	 * Release the entry's messages from the body store, once the entry has left the table.
+	 * The messages stay readable until the entry itself is collected.
+	 */
+	public synchronized void releaseBodies(BodyStore bodyStore) {
+		if (bodiesReleased) return;
+		bodiesReleased = true;
+		bodyStore.release(this.storedRequest);
+		bodyStore.release(this.storedResponse);
+	}
+
+	/**
+	 * Drop any cached forms of the entry's messages, once the entry has left the table.
+	 */
+	public void invalidateCachedBodies(BodyCache bodyCache) {
+		bodyCache.invalidate(this.request);
+		bodyCache.invalidate(this.storedRequest);
+		bodyCache.invalidate(this.response);
+		bodyCache.invalidate(this.storedResponse);
+	}
+
+	/**
+	 * The returned array may be shared through the body cache and must not be modified.
+	 */
 	public byte[] getRequestBytes() {
-		if(request == null) return new byte[0];
-		return this.request.toByteArray().getBytes();
+		HttpRequest request = this.request;
+		if (request != null) return cached(request, BodyCache.Kind.REQUEST_BYTES, () -> request.toByteArray().getBytes());
+		BodyStore.Location storedRequest = this.storedRequest;
+		if (storedRequest != null) return cached(storedRequest, BodyCache.Kind.REQUEST_BYTES, storedRequest::bytes);
+		return new byte[0];
 	}
 
+	/**
+	 * The returned array may be shared through the body cache and must not be modified.
+	 */
 	public byte[] getResponseBytes() {
-		if(response == null) return new byte[0];
-		return response.toByteArray().getBytes();
+		HttpResponse response = this.response;
+		if (response != null) return cached(response, BodyCache.Kind.RESPONSE_BYTES, () -> response.toByteArray().getBytes());
+		BodyStore.Location storedResponse = this.storedResponse;
+		if (storedResponse != null) return cached(storedResponse, BodyCache.Kind.RESPONSE_BYTES, storedResponse::bytes);
+		return new byte[0];
+	}
+
+	/**
+	 * @return The raw request. Stored requests are read directly from the body store, without copying.
+	 */
+	public ByteBuffer getRequestBuffer() {
+		if (this.request == null) {
+			BodyStore.Location storedRequest = this.storedRequest;
+			if (storedRequest != null) return storedRequest.buffer();
+		}
+		return ByteBuffer.wrap(getRequestBytes());
+	}
+
+	/**
+	 * @return The raw response. Stored responses are read directly from the body store, without copying.
+	 */
+	public ByteBuffer getResponseBuffer() {
+		if (this.response == null) {
+			BodyStore.Location storedResponse = this.storedResponse;
+			if (storedResponse != null) return storedResponse.buffer();
+		}
+		return ByteBuffer.wrap(getResponseBytes());
+	}
+
+	public String getRequestBodyString() {
+		HttpRequest request = this.request;
+		if (request != null) return cached(request, BodyCache.Kind.REQUEST_BODY, request::bodyToString);
+		BodyStore.Location storedRequest = this.storedRequest;
+		if (storedRequest == null) return "";
+		return cached(storedRequest, BodyCache.Kind.REQUEST_BODY, () -> decodeBody(storedRequest.buffer(), getRequestBodyLength()));
+	}
+
+	public String getResponseBodyString() {
+		HttpResponse response = this.response;
+		if (response != null) return cached(response, BodyCache.Kind.RESPONSE_BODY, response::bodyToString);
+		BodyStore.Location storedResponse = this.storedResponse;
+		if (storedResponse == null) return "";
+		return cached(storedResponse, BodyCache.Kind.RESPONSE_BODY, () -> decodeBody(storedResponse.buffer(), getResponseBodyLength()));
+	}
+
+	/**
+	 * Decode a stored body straight from the store, one char per byte as Burp does, rather than rebuilding the message.
+	 */
+	private static String decodeBody(ByteBuffer message, int bodyLength) {
+		if (bodyLength < 0 || bodyLength > message.remaining()) bodyLength = 0;
+		byte[] body = new byte[bodyLength];
+		message.get(message.limit() - bodyLength, body);
+		return new String(body, StandardCharsets.ISO_8859_1);
+	}
+
+	private String getResponseHeadersString() {
+		List<HttpHeader> responseHeaders = this.responseHeaders;
+		return responseHeaders != null ? responseHeaders.stream().map(HttpHeader::toString).collect(Collectors.joining("\r\n")) : "";
+	}
+
+	@Override
+	public BodyBytes getBodyBytes(LogEntryField field) {
+		try {
+			switch (field) {
+				case REQUEST_BODY:
+					return hasRequest() ? bodyBytes(getRequestBuffer(), getRequestBodyLength()) : null;
+				case RESPONSE_BODY:
+					return hasResponse() ? bodyBytes(getResponseBuffer(), getResponseBodyLength()) : null;
+				default:
+					return null;
+			}
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static BodyBytes bodyBytes(ByteBuffer message, int bodyLength) {
+		//The body length is only known once the message has been processed.
+		if (bodyLength < 0 || bodyLength > message.remaining()) return null;
+		return new BodyBytes(message.position(message.limit() - bodyLength));
+	}
+
+	private static <T> T cached(Object message, BodyCache.Kind kind, Supplier<T> loader) {
+		LoggerPlusPlus instance = LoggerPlusPlus.instance;
+		if (instance == null || instance.getLogProcessor() == null) return loader.get();
+		return instance.getLogProcessor().getBodyCache().get(message, kind, loader);
 	}
 
 	public void setReqestTime(Date requestTime) {
-		this.requestDateTime = requestTime;
-		this.formattedRequestTime = LogProcessor.LOGGER_DATE_FORMAT.format(this.requestDateTime);
+		setRequestDateTime(requestTime);
 	}
 
 	public void setResponseTime(Date responseTime) {
-		this.responseDateTime = responseTime;
-		this.formattedResponseTime = LogProcessor.LOGGER_DATE_FORMAT.format(this.responseDateTime);
+		setResponseDateTime(responseTime);
+	}
+
+	/*************************************
+	 * Columnar fields.
+	 * Held by the entry until it is added to the table, then by the table's store. See ColumnarEntryStore.
+	 *************************************/
+
+	private static final ToolType[] TOOL_TYPES = ToolType.values();
+	private static final MimeType[] MIME_TYPES = MimeType.values();
+	//Stands in for a null date in the time columns.
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	public ToolType getTool() {
+		int tool = readInt(IntColumn.TOOL);
+		return tool >= 0 ? TOOL_TYPES[tool] : null;
+	}
+
+	public void setTool(ToolType tool) {
+		writeInt(IntColumn.TOOL, tool != null ? tool.ordinal() : -1);
+	}
+
+	public Short getResponseStatus() {
+		return (short) readInt(IntColumn.STATUS);
+	}
+
+	public void setResponseStatus(Short responseStatus) {
+		writeInt(IntColumn.STATUS, responseStatus != null ? responseStatus : -1);
+	}
+
+	public short getTargetPort() {
+		return (short) readInt(IntColumn.PORT);
+	}
+
+	public void setTargetPort(short targetPort) {
+		writeInt(IntColumn.PORT, targetPort);
+	}
+
+	public int getRequestResponseDelay() {
+		return readInt(IntColumn.RTT);
+	}
+
+	public void setRequestResponseDelay(int requestResponseDelay) {
+		writeInt(IntColumn.RTT, requestResponseDelay);
+	}
+
+	public int getRequestBodyLength() {
+		return readInt(IntColumn.REQUEST_BODY_LENGTH);
+	}
+
+	public void setRequestBodyLength(int requestBodyLength) {
+		writeInt(IntColumn.REQUEST_BODY_LENGTH, requestBodyLength);
+	}
+
+	public int getResponseBodyLength() {
+		return readInt(IntColumn.RESPONSE_BODY_LENGTH);
+	}
+
+	public void setResponseBodyLength(int responseBodyLength) {
+		writeInt(IntColumn.RESPONSE_BODY_LENGTH, responseBodyLength);
+	}
+
+	public MimeType getResponseMimeType() {
+		int mimeType = readInt(IntColumn.MIME_TYPE);
+		return mimeType >= 0 ? MIME_TYPES[mimeType] : null;
+	}
+
+	public void setResponseMimeType(MimeType responseMimeType) {
+		writeInt(IntColumn.MIME_TYPE, responseMimeType != null ? responseMimeType.ordinal() : -1);
+	}
+
+	public MimeType getResponseInferredMimeType() {
+		int mimeType = readInt(IntColumn.INFERRED_MIME_TYPE);
+		return mimeType >= 0 ? MIME_TYPES[mimeType] : null;
+	}
+
+	public void setResponseInferredMimeType(MimeType responseInferredMimeType) {
+		writeInt(IntColumn.INFERRED_MIME_TYPE, responseInferredMimeType != null ? responseInferredMimeType.ordinal() : -1);
+	}
+
+	/**
+	 * @return A new Date each call, changing it does not change the entry
+	 */
+	public Date getRequestDateTime() {
+		long time = readLong(LongColumn.REQUEST_TIME);
+		return time != NO_TIME ? new Date(time) : null;
+	}
+
+	public void setRequestDateTime(Date requestDateTime) {
+		writeLong(LongColumn.REQUEST_TIME, requestDateTime != null ? requestDateTime.getTime() : NO_TIME);
+	}
+
+	/**
+	 * @return A new Date each call, changing it does not change the entry
+	 */
+	public Date getResponseDateTime() {
+		long time = readLong(LongColumn.RESPONSE_TIME);
+		return time != NO_TIME ? new Date(time) : null;
+	}
+
+	public void setResponseDateTime(Date responseDateTime) {
+		writeLong(LongColumn.RESPONSE_TIME, responseDateTime != null ? responseDateTime.getTime() : NO_TIME);
+	}
+
+	public String getHostname() {
+		return readString(StringColumn.HOSTNAME);
+	}
+
+	public void setHostname(String hostname) {
+		writeString(StringColumn.HOSTNAME, hostname);
+	}
+
+	public String getHost() {
+		return readString(StringColumn.HOST);
+	}
+
+	public void setHost(String host) {
+		writeString(StringColumn.HOST, host);
+	}
+
+	public String getProtocol() {
+		return readString(StringColumn.PROTOCOL);
+	}
+
+	public void setProtocol(String protocol) {
+		writeString(StringColumn.PROTOCOL, protocol);
+	}
+
+	public String getMethod() {
+		return readString(StringColumn.METHOD);
+	}
+
+	public void setMethod(String method) {
+		writeString(StringColumn.METHOD, method);
+	}
+
+	public String getRequestHttpVersion() {
+		return readString(StringColumn.REQUEST_HTTP_VERSION);
+	}
+
+	public void setRequestHttpVersion(String requestHttpVersion) {
+		writeString(StringColumn.REQUEST_HTTP_VERSION, requestHttpVersion);
+	}
+
+	public String getResponseHttpVersion() {
+		return readString(StringColumn.RESPONSE_HTTP_VERSION);
+	}
+
+	public void setResponseHttpVersion(String responseHttpVersion) {
+		writeString(StringColumn.RESPONSE_HTTP_VERSION, responseHttpVersion);
+	}
+
+	public String getUrlExtension() {
+		return readString(StringColumn.EXTENSION);
+	}
+
+	public void setUrlExtension(String urlExtension) {
+		writeString(StringColumn.EXTENSION, urlExtension);
+	}
+
+	public String getListenerInterface() {
+		return readString(StringColumn.LISTENER_INTERFACE);
+	}
+
+	public void setListenerInterface(String listenerInterface) {
+		writeString(StringColumn.LISTENER_INTERFACE, FIELD_DICTIONARY.encode(listenerInterface));
+	}
+
+	@Override
+	public int getDictionaryCode(LogEntryField field) {
+		StringColumn column = StringColumn.of(field);
+		return column != null ? readFoldedCode(column) : FieldDictionary.NO_CODE;
+	}
+
+	/**
+	 * Move the entry's columns into a slot of the store. Does nothing if the entry is already in a store.
+	 */
+	synchronized void attach(ColumnarEntryStore store) {
+		if (this.store != null) return;
+		this.slot = store.add(this.row);
+		//Publish the store before dropping the row, so readers always find one of them.
+		this.store = store;
+		this.row = null;
+	}
+
+	/**
+	 * Copy the entry's columns out of the store into a row of its own, then free its slot.
+	 */
+	synchronized void detach(ColumnarEntryStore store) {
+		if (this.store != store) return;
+		this.row = store.copy(this.slot);
+		this.store = null;
+		//Only freed once the entry no longer reads from it, so no reader can see another entry's values.
+		store.release(this.slot);
+	}
+
+	private int readInt(IntColumn column) {
+		while (true) {
+			ColumnarEntryStore store = this.store;
+			if (store == null) {
+				ColumnarEntryStore.Row row = this.row;
+				if (row != null) return row.getInt(column);
+				continue; //Attached since reading the store, read it again.
+			}
+			long stamp = store.tryOptimisticRead();
+			if (this.store == store) {
+				int value = store.getInt(this.slot, column);
+				if (store.validate(stamp)) return value;
+			}
+			stamp = store.readLock();
+			try {
+				if (this.store == store) return store.getInt(this.slot, column);
+			} finally {
+				store.unlockRead(stamp);
+			}
+		}
+	}
+
+	private long readLong(LongColumn column) {
+		while (true) {
+			ColumnarEntryStore store = this.store;
+			if (store == null) {
+				ColumnarEntryStore.Row row = this.row;
+				if (row != null) return row.getLong(column);
+				continue;
+			}
+			long stamp = store.tryOptimisticRead();
+			if (this.store == store) {
+				long value = store.getLong(this.slot, column);
+				if (store.validate(stamp)) return value;
+			}
+			stamp = store.readLock();
+			try {
+				if (this.store == store) return store.getLong(this.slot, column);
+			} finally {
+				store.unlockRead(stamp);
+			}
+		}
+	}
+
+	private String readString(StringColumn column) {
+		while (true) {
+			ColumnarEntryStore store = this.store;
+			if (store == null) {
+				ColumnarEntryStore.Row row = this.row;
+				if (row != null) return row.getString(column);
+				continue;
+			}
+			long stamp = store.tryOptimisticRead();
+			if (this.store == store) {
+				String value = store.getString(this.slot, column);
+				if (store.validate(stamp)) return value;
+			}
+			stamp = store.readLock();
+			try {
+				if (this.store == store) return store.getString(this.slot, column);
+			} finally {
+				store.unlockRead(stamp);
+			}
+		}
+	}
+
+	private int readFoldedCode(StringColumn column) {
+		while (true) {
+			ColumnarEntryStore store = this.store;
+			if (store == null) {
+				ColumnarEntryStore.Row row = this.row;
+				if (row != null) return row.getFoldedCode(column);
+				continue;
+			}
+			long stamp = store.tryOptimisticRead();
+			if (this.store == store) {
+				int value = store.getFoldedCode(this.slot, column);
+				if (store.validate(stamp)) return value;
+			}
+			stamp = store.readLock();
+			try {
+				if (this.store == store) return store.getFoldedCode(this.slot, column);
+			} finally {
+				store.unlockRead(stamp);
+			}
+		}
+	}
+
+	//Writes synchronize on the entry, so they can't be lost to a concurrent attach or detach.
+
+	private synchronized void writeInt(IntColumn column, int value) {
+		ColumnarEntryStore store = this.store;
+		if (store != null) store.setInt(this.slot, column, value);
+		else this.row.setInt(column, value);
+	}
+
+	private synchronized void writeLong(LongColumn column, long value) {
+		ColumnarEntryStore store = this.store;
+		if (store != null) store.setLong(this.slot, column, value);
+		else this.row.setLong(column, value);
+	}
+
+	private synchronized void writeString(StringColumn column, String value) {
+		ColumnarEntryStore store = this.store;
+		if (store != null) store.setString(this.slot, column, value);
+		else this.row.setString(column, value);
 	}
 
 	public void setComment(String comment) {
@@ -407,6 +936,7 @@ public class LogEntry {
 	}
 
 
+	@Override
 	public Object getValueByKey(LogEntryField columnName) {
 
 		try {
@@ -415,7 +945,7 @@ public class LogEntry {
 					return montoya.scope().isInScope(urlString);
 				case PROXY_TOOL:
 				case REQUEST_TOOL:
-					return tool.toolName();
+					return getTool().toolName();
 				case TAGS:
 					return this.matchingTags.stream().collect(Collectors.toList());
 				case URL:
@@ -427,43 +957,43 @@ public class LogEntry {
 				case PATHQUERY:
 					return this.url.getFile();
 				case STATUS:
-					return this.responseStatus;
+					return getResponseStatus();
 				case STATUS_TEXT:
 					return this.responseStatusText;
 				case RESPONSE_HTTP_VERSION:
-					return this.responseHttpVersion;
+					return getResponseHttpVersion();
 				case PROTOCOL:
-					return this.protocol;
+					return getProtocol();
 				case HOSTNAME:
-					return this.hostname;
+					return getHostname();
 				case HOST:
-					return this.host;
+					return getHost();
 				case MIME_TYPE:
-					return this.responseMimeType;
+					return getResponseMimeType();
 				case RESPONSE_LENGTH:
-					return this.responseBodyLength;
+					return getResponseBodyLength();
 				case PORT:
-					return this.targetPort;
+					return getTargetPort();
 				case METHOD:
-					return this.method;
+					return getMethod();
 				case REQUEST_TIME:
-					return this.requestDateTime;
+					return getRequestDateTime();
 				case RESPONSE_TIME:
-					return this.responseDateTime;
+					return getResponseDateTime();
 				case COMMENT:
 					return this.comment;
 				case REQUEST_CONTENT_TYPE:
 					return this.requestContentType;
 				case REQUEST_HTTP_VERSION:
-					return this.requestHttpVersion;
+					return getRequestHttpVersion();
 				case EXTENSION:
-					return this.urlExtension;
+					return getUrlExtension();
 				case REFERRER:
 					return this.referrerURL;
 				case PARAMETERS:
-					return this.parameters;
+					return this.getParameters();
 				case PARAMETER_COUNT:
-					return this.parameters.size();
+					return this.getParameters().size();
 				case HASGETPARAM:
 					return this.url != null && this.url.getQuery() != null;
 				case HASPOSTPARAM:
@@ -471,23 +1001,23 @@ public class LogEntry {
 				case HASCOOKIEPARAM:
 					return this.hasCookieParam;
 				case REQUEST_LENGTH:
-					return this.requestBodyLength;
+					return getRequestBodyLength();
 				case RESPONSE_CONTENT_TYPE:
 					return this.responseContentType;
 				case INFERRED_TYPE:
-					return this.responseInferredMimeType;
+					return getResponseInferredMimeType();
 				case HAS_SET_COOKIES:
-					return this.hasSetCookies;
+					return this.isHasSetCookies();
 				case HASPARAMS:
 					return this.params;
 				case TITLE:
-					return this.title;
+					return this.getTitle();
 				case ISSSL:
 					return this.isSSL;
 				case NEW_COOKIES:
-					return this.newCookies;
+					return this.getNewCookies();
 				case LISTENER_INTERFACE:
-					return this.listenerInterface;
+					return getListenerInterface();
 				case CLIENT_IP:
 					return this.clientIP;
 				case COMPLETE:
@@ -495,31 +1025,31 @@ public class LogEntry {
 				case SENTCOOKIES:
 					return this.sentCookies;
 				case USES_COOKIE_JAR:
-					return this.usesCookieJar.toString();
+					return this.getUsesCookieJar().toString();
 				case ORIGIN:
 					return this.origin;
 				case REFLECTED_PARAMS:
-					return reflectedParameters;
+					return this.getReflectedParameters();
 				case REFLECTION_COUNT:
-					return reflectedParameters.size();
+					return this.getReflectedParameters().size();
 				case REQUEST_BODY: // request
-					return request.bodyToString();
+					return getRequestBodyString();
 				case REQUEST_BODY_LENGTH:
-					return request.body().length();
+					return getRequestBodyLength();
 //							.substring(request.length - requestBodyLength);
 				case RESPONSE_BODY: // response
-					return response.bodyToString();
+					return getResponseBodyString();
 				case RESPONSE_BODY_LENGTH:
-					return response.body().length();
+					return getResponseBodyLength();
 				case RTT:
-					return requestResponseDelay;
+					return getRequestResponseDelay();
 				case REQUEST_HEADERS: {
 					if(requestHeaders == null) return "";
 					//Hacky workaround since Burp doesn't include path in headers.
-					return String.format("%s %s %s\r\n%s", request.method(), request.path(), request.httpVersion(), requestHeaders.stream().map(HttpHeader::toString).collect(Collectors.joining("\r\n")));
+					return String.format("%s %s %s\r\n%s", getMethod(), getRequest().path(), getRequestHttpVersion(), requestHeaders.stream().map(HttpHeader::toString).collect(Collectors.joining("\r\n")));
 				}
 				case RESPONSE_HEADERS:
-					return responseHeaders != null ? responseHeaders.stream().map(HttpHeader::toString).collect(Collectors.joining("\r\n")) : "";
+					return getResponseHeadersString();
 				case REDIRECT_URL:
 					return redirectURL;
 				case BASE64_REQUEST:
@@ -550,7 +1080,7 @@ public class LogEntry {
 	}
 
 	public HttpService getHttpService() {
-		return this.request.httpService();
+		return this.httpService != null ? this.httpService : this.request.httpService();
 	}
 
 	public enum CookieJarStatus {
@@ -576,6 +1106,39 @@ public class LogEntry {
 	 * @return If the list of matching color filters was updated
 	 */
 	public boolean testColorFilter(TableColorRule tableColorRule, boolean retest) {
+		TableColorRule previousColorRule = this.colorRule;
+		boolean changed = updateColorFilterMatch(tableColorRule, retest);
+		//Rules are retested when their priority changes, so recompute even if the match itself has not changed.
+		updateColorRule(tableColorRule);
+		return changed || previousColorRule != this.colorRule;
+	}
+
+	/**
+	 * Forget a color rule which has been removed.
+	 *
+	 * @return If the rule had matched this entry
+	 */
+	public boolean removeColorFilter(TableColorRule tableColorRule) {
+		boolean wasPresent = this.matchingColorFilters.remove(tableColorRule.getUuid());
+		if (wasPresent) updateColorRule(tableColorRule);
+		return wasPresent;
+	}
+
+	private void updateColorRule(TableColorRule testedRule) {
+		Map<UUID, TableColorRule> colorRules = LoggerPlusPlus.instance.getLibraryController().getColorFilters();
+		TableColorRule highest = null;
+		synchronized (this.matchingColorFilters) {
+			for (UUID uid : this.matchingColorFilters) {
+				TableColorRule rule = uid.equals(testedRule.getUuid()) ? testedRule : colorRules.get(uid);
+				if (rule != null && (highest == null || rule.getPriority() < highest.getPriority())) {
+					highest = rule;
+				}
+			}
+		}
+		this.colorRule = highest;
+	}
+
+	private boolean updateColorFilterMatch(TableColorRule tableColorRule, boolean retest) {
 		if (!tableColorRule.isEnabled() || tableColorRule.getFilterExpression() == null) {
 			return this.getMatchingColorFilters().remove(tableColorRule.getUuid());
 		}
@@ -2,5 +2,6 @@ package com.nccgroup.loggerplusplus.logview;
 
 public interface LogTableFilterStatusListener {
     void onFilteringStart();
+    void onFilteringProgress(int rowsTested, int rowCount);
     void onFilteringFinish();
 }
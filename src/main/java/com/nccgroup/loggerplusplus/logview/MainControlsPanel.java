@@ -8,9 +8,11 @@ import com.nccgroup.loggerplusplus.util.userinterface.dialog.TagDialog;
 import javax.swing.*;
 import java.awt.*;
 
-public class MainControlsPanel extends JPanel {
+public class MainControlsPanel extends JPanel implements LogTableFilterStatusListener {
     
     private final LogFilterController logFilterController;
+    private final JProgressBar filterProgressBar;
+    private final JButton cancelFilterButton;
 
     public MainControlsPanel(LogFilterController logFilterController){
         super(new GridBagLayout());
@@ -28,17 +30,32 @@ public class MainControlsPanel extends JPanel {
         gbc.weightx = 99.0;
         this.add(logFilterController.getFilterField(), gbc);
 
+        //Only shown while a new filter is tested against the table in the background.
+        this.filterProgressBar = new JProgressBar();
+        this.filterProgressBar.setStringPainted(true);
+        this.filterProgressBar.setVisible(false);
+        this.cancelFilterButton = new JButton("Cancel");
+        this.cancelFilterButton.addActionListener(actionEvent -> logFilterController.cancelFiltering());
+        this.cancelFilterButton.setVisible(false);
+
+        gbc.gridx = 2;
+        gbc.weightx = 0;
+        this.add(filterProgressBar, gbc);
+
+        gbc.gridx = 3;
+        this.add(cancelFilterButton, gbc);
+
         final JButton tagsButton = new JButton("Tags");
         tagsButton.addActionListener(actionEvent -> new TagDialog(LoggerPlusPlus.instance.getLibraryController()).setVisible(true));
 
-        gbc.gridx = 2;
+        gbc.gridx = 4;
         gbc.weightx = 0;
         this.add(tagsButton, gbc);
 
         final JButton colorFilterButton = new JButton("Colorize");
         colorFilterButton.addActionListener(actionEvent -> new ColorFilterDialog(LoggerPlusPlus.instance.getLibraryController()).setVisible(true));
 
-        gbc.gridx = 3;
+        gbc.gridx = 5;
         gbc.weightx = 0;
         this.add(colorFilterButton, gbc);
 
@@ -47,12 +64,38 @@ public class MainControlsPanel extends JPanel {
             int res = JOptionPane.showConfirmDialog(LoggerPlusPlus.instance.getLoggerFrame(), "Are you sure you want to clear the log table?", "Clear Logs", JOptionPane.YES_NO_OPTION,JOptionPane.WARNING_MESSAGE);
             if(res == JOptionPane.YES_OPTION) {
                 logFilterController.getLogViewController().getLogTableController().reset();
+                LoggerPlusPlus.instance.getLogProcessor().getBodyCache().clear();
             }
         });
 
-        gbc.gridx = 4;
+        gbc.gridx = 6;
         gbc.weightx = 0;
         this.add(clearLogsButton, gbc);
+
+        logFilterController.getLogViewController().getLogTableController().getLogTable().addFilterStatusListener(this);
+    }
+
+    @Override
+    public void onFilteringStart() {
+        filterProgressBar.setValue(0);
+        filterProgressBar.setString("Filtering...");
+        filterProgressBar.setVisible(true);
+        cancelFilterButton.setVisible(true);
+        revalidate();
+    }
+
+    @Override
+    public void onFilteringProgress(int rowsTested, int rowCount) {
+        filterProgressBar.setMaximum(rowCount);
+        filterProgressBar.setValue(rowsTested);
+        filterProgressBar.setString(String.format("Filtering %d/%d", rowsTested, rowCount));
+    }
+
+    @Override
+    public void onFilteringFinish() {
+        filterProgressBar.setVisible(false);
+        cancelFilterButton.setVisible(false);
+        revalidate();
     }
 
 
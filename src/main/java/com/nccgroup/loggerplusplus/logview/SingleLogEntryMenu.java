@@ -44,7 +44,7 @@ public class SingleLogEntryMenu extends JPopupMenu {
 
         if (columnValue != null) {
             if (columnValue instanceof Date) {
-                columnValueString = "\"" + LogProcessor.LOGGER_DATE_FORMAT.format(columnValue) + "\"";
+                columnValueString = "\"" + LogProcessor.formatLoggerDate((Date) columnValue) + "\"";
             } else {
                 columnValueString = columnValue instanceof Number ?
                         columnValue.toString() : "\"" + columnValue + "\"";
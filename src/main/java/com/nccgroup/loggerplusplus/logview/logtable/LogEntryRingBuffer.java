@@ -0,0 +1,192 @@
+package com.nccgroup.loggerplusplus.logview.logtable;
+
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+
+import java.util.*;
+
+/**
+ * Ring buffer backed list of the table's entries.
+ * <p>
+ * Entries are appended at the tail and evicted from the head, both in amortized O(1) rather than shifting
+ * the whole array. Each entry is given a row id when added, which stays the same while the rows before it
+ * are evicted. Ids increase along the list, so an entry's row is found from its id by offsetting from the head,
+ * or by binary search if rows have since been removed from the middle, rather than by a linear search.
+ * <p>
+ * All methods synchronize on the list, callers needing several operations to be atomic should do the same.
+ */
+public class LogEntryRingBuffer extends AbstractList<LogEntry> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private LogEntry[] entries;
+    private long[] ids;
+    private final HashMap<LogEntry, Long> idsByEntry;
+    private int head;
+    private int size;
+    private long nextId;
+
+    public LogEntryRingBuffer() {
+        this.entries = new LogEntry[INITIAL_CAPACITY];
+        this.ids = new long[INITIAL_CAPACITY];
+        this.idsByEntry = new HashMap<>();
+    }
+
+    private int slot(int index) {
+        return (head + index) & (entries.length - 1);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized LogEntry get(int index) {
+        Objects.checkIndex(index, size);
+        return entries[slot(index)];
+    }
+
+    @Override
+    public synchronized boolean add(LogEntry logEntry) {
+        if (size == entries.length) grow();
+        int slot = slot(size);
+        entries[slot] = logEntry;
+        ids[slot] = nextId;
+        idsByEntry.put(logEntry, nextId);
+        nextId++;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends LogEntry> logEntries) {
+        for (LogEntry logEntry : logEntries) add(logEntry);
+        return !logEntries.isEmpty();
+    }
+
+    /**
+     * Evict the oldest entries.
+     * @return The evicted entries, oldest first
+     */
+    public synchronized List<LogEntry> removeFirst(int count) {
+        count = Math.min(count, size);
+        List<LogEntry> removed = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int slot = slot(i);
+            removed.add(entries[slot]);
+            idsByEntry.remove(entries[slot]);
+            entries[slot] = null;
+        }
+        head = slot(count);
+        size -= count;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public synchronized LogEntry remove(int index) {
+        Objects.checkIndex(index, size);
+        LogEntry removed = entries[slot(index)];
+        idsByEntry.remove(removed);
+        //Close the gap by shifting whichever side of it is shorter.
+        if (index < size / 2) {
+            for (int i = index; i > 0; i--) moveSlot(slot(i - 1), slot(i));
+            entries[head] = null;
+            head = slot(1);
+        } else {
+            for (int i = index; i < size - 1; i++) moveSlot(slot(i + 1), slot(i));
+            entries[slot(size - 1)] = null;
+        }
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    private void moveSlot(int from, int to) {
+        entries[to] = entries[from];
+        ids[to] = ids[from];
+    }
+
+    @Override
+    public synchronized void clear() {
+        Arrays.fill(entries, null);
+        idsByEntry.clear();
+        head = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public synchronized int indexOf(Object o) {
+        if (!(o instanceof LogEntry)) return -1;
+        Long id = idsByEntry.get(o);
+        return id != null ? indexOfId(id) : -1;
+    }
+
+    @Override
+    public synchronized int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        return o instanceof LogEntry && idsByEntry.containsKey(o);
+    }
+
+    /**
+     * @return The row id of the entry at the index
+     */
+    public synchronized long getId(int index) {
+        Objects.checkIndex(index, size);
+        return ids[slot(index)];
+    }
+
+    /**
+     * @return A copy of the row ids of every entry, in order
+     */
+    public synchronized long[] getIds() {
+        long[] copy = new long[size];
+        for (int i = 0; i < size; i++) copy[i] = ids[slot(i)];
+        return copy;
+    }
+
+    /**
+     * @return The current index of the entry with the row id, or -1 if it has been removed
+     */
+    public synchronized int indexOfId(long id) {
+        if (size == 0) return -1;
+        long offset = id - ids[head];
+        //Without removals from the middle, ids are contiguous from the head.
+        if (offset >= 0 && offset < size && ids[slot((int) offset)] == id) return (int) offset;
+
+        int low = 0, high = Math.min(size - 1, (int) Math.min(offset, Integer.MAX_VALUE));
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = ids[slot(mid)];
+            if (midId < id) low = mid + 1;
+            else if (midId > id) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        LogEntry[] grownEntries = new LogEntry[entries.length * 2];
+        long[] grownIds = new long[entries.length * 2];
+        for (int i = 0; i < size; i++) {
+            grownEntries[i] = entries[slot(i)];
+            grownIds[i] = ids[slot(i)];
+        }
+        entries = grownEntries;
+        ids = grownIds;
+        head = 0;
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        Object[] array = new Object[size];
+        for (int i = 0; i < size; i++) array[i] = entries[slot(i)];
+        return array;
+    }
+}
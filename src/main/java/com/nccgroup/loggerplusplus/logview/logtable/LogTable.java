@@ -9,6 +9,7 @@ import com.nccgroup.loggerplusplus.filter.colorfilter.TableColorRule;
 import com.nccgroup.loggerplusplus.filter.logfilter.LogTableFilter;
 import com.nccgroup.loggerplusplus.logentry.LogEntry;
 import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+import com.nccgroup.loggerplusplus.logview.LogTableFilterStatusListener;
 import com.nccgroup.loggerplusplus.logview.MultipleLogEntryMenu;
 import com.nccgroup.loggerplusplus.logview.SingleLogEntryMenu;
 import com.nccgroup.loggerplusplus.logview.entryviewer.RequestViewerController;
@@ -19,14 +20,11 @@ import javax.swing.*;
 import javax.swing.event.RowSorterEvent;
 import javax.swing.event.TableModelEvent;
 import javax.swing.table.TableCellRenderer;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -34,7 +32,7 @@ public class LogTable extends JTable
 {
     private final LogTableController controller;
     private final Preferences preferences;
-    private final TableRowSorter<LogTableModel> sorter;
+    private final LogTableRowSorter sorter;
 
     LogTable(LogTableController controller)
     {
@@ -48,9 +46,7 @@ public class LogTable extends JTable
         this.setDefaultRenderer(Boolean.class, new BooleanRenderer()); //Fix grey checkbox background
         ((JComponent) this.getDefaultRenderer(Boolean.class)).setOpaque(true); // to remove the white background of the checkboxes!
 
-        this.sorter = new TableRowSorter<>(this.getModel());
-        this.sorter.setMaxSortKeys(1);
-        this.sorter.setSortsOnUpdates(true);
+        this.sorter = new LogTableRowSorter(this.getModel());
         this.setRowSorter(this.sorter);
 
         this.sorter.addRowSorterListener(rowSorterEvent -> {
@@ -116,39 +112,33 @@ public class LogTable extends JTable
 
         Component c = super.prepareRenderer(renderer, row, column);
 
-        IntStream selectedRows = IntStream.of(this.getSelectedRows());
-
-        if(selectedRows.anyMatch(i -> i == row)){
-            c.setBackground(this.getSelectionBackground());
-            c.setForeground(this.getSelectionForeground());
-        }else {
-            if(entry == null){
-                System.err.println("Could not convert row index to model. Table entry might not be highlighted properly.");
-                return c;
-            }
-            if(entry.getMatchingColorFilters().size() != 0){
-                TableColorRule tableColorRule = null;
-                Map<UUID, TableColorRule> colorFilters = this.preferences.getSetting(Globals.PREF_COLOR_FILTERS);
-                for (UUID uid : entry.getMatchingColorFilters()) {
-                    if(tableColorRule == null || tableColorRule.getPriority() > colorFilters.get(uid).getPriority()){
-                        tableColorRule = colorFilters.get(uid);
-                    }
-                }
-                if (tableColorRule == null) {
-                    c.setForeground(this.getForeground());
-                    c.setBackground(this.getBackground());
-                } else {
-                    c.setForeground(tableColorRule.getForegroundColor());
-                    c.setBackground(tableColorRule.getBackgroundColor());
-                }
-            }else{
-                c.setForeground(this.getForeground());
-                c.setBackground(this.getBackground());
-            }
+        boolean selected = isRowSelected(row);
+        if(!selected && entry == null){
+            System.err.println("Could not convert row index to model. Table entry might not be highlighted properly.");
+            return c;
         }
+        colorCell(this, c, selected, selected ? null : entry.getColorRule());
         return c;
     }
 
+    /**
+     * Color a rendered cell with the table's selection colors if its row is selected, otherwise with the
+     * row's color rule, or the table's own colors if it has none.
+     * Called for every visible cell on each repaint, so avoid allocating or looking up the color rules here.
+     */
+    static void colorCell(JTable table, Component c, boolean selected, TableColorRule tableColorRule){
+        if(selected){
+            c.setBackground(table.getSelectionBackground());
+            c.setForeground(table.getSelectionForeground());
+        }else if(tableColorRule == null){
+            c.setForeground(table.getForeground());
+            c.setBackground(table.getBackground());
+        }else{
+            c.setForeground(tableColorRule.getForegroundColor());
+            c.setBackground(tableColorRule.getBackgroundColor());
+        }
+    }
+
     private void registerListeners(){
         this.addMouseListener( new MouseAdapter()
         {
@@ -202,14 +192,14 @@ public class LogTable extends JTable
 
         getModel().addTableModelListener(tableModelEvent -> {
             if(tableModelEvent.getType() == TableModelEvent.INSERT && (boolean) preferences.getSetting(Globals.PREF_AUTO_SCROLL)){
-                LogTable.this.scrollRectToVisible(getCellRect(tableModelEvent.getFirstRow(), tableModelEvent.getColumn(), true));
+                LogTable.this.scrollRectToVisible(getCellRect(tableModelEvent.getLastRow(), tableModelEvent.getColumn(), true));
             }
         });
     }
 
 
     public LogTableFilter getCurrentFilter(){
-        return (LogTableFilter) this.sorter.getRowFilter();
+        return this.sorter.getRowFilter();
     }
 
     public void setFilter(LogTableFilter filter){
@@ -217,6 +207,21 @@ public class LogTable extends JTable
         ((JScrollPane) this.getParent().getParent()).getVerticalScrollBar().setValue(0);
     }
 
+    /**
+     * Abandon filtering the table in the background, keeping the previous filter.
+     */
+    public void cancelFiltering(){
+        this.sorter.cancelFiltering();
+    }
+
+    public void addFilterStatusListener(LogTableFilterStatusListener listener){
+        this.sorter.addFilterStatusListener(listener);
+    }
+
+    public void shutdown(){
+        this.sorter.shutdown();
+    }
+
     @Override
     public LogTableModel getModel(){
         return (LogTableModel) super.getModel();
@@ -2,6 +2,7 @@ package com.nccgroup.loggerplusplus.logview.logtable;
 
 import com.coreyd97.BurpExtenderUtilities.Preferences;
 import com.nccgroup.loggerplusplus.filterlibrary.FilterLibraryController;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
 import com.nccgroup.loggerplusplus.logview.LogViewController;
 import com.nccgroup.loggerplusplus.util.Globals;
 
@@ -11,6 +12,7 @@ public class LogTableController {
     private final FilterLibraryController filterLibraryController;
     private final Preferences preferences;
     private final LogTableModel logTableModel;
+    private final LogTableUpdatePublisher updatePublisher;
     private final LogTableColumnModel logTableColumnModel;
     private final TableHeader tableHeader;
     private final LogTable logTable;
@@ -22,6 +24,7 @@ public class LogTableController {
 
         this.logTableColumnModel = new LogTableColumnModel(this);
         this.logTableModel = new LogTableModel(this, logTableColumnModel);
+        this.updatePublisher = new LogTableUpdatePublisher(logTableModel);
         this.tableHeader = new TableHeader(this);
         this.logTable = new LogTable(this);
 
@@ -41,6 +44,10 @@ public class LogTableController {
         return logTableModel;
     }
 
+    public LogTableUpdatePublisher getUpdatePublisher() {
+        return updatePublisher;
+    }
+
     public LogTable getLogTable() {
         return logTable;
     }
@@ -55,13 +62,20 @@ public class LogTableController {
 
 
     public void reset(){
+        updatePublisher.clear();
         logTableModel.reset();
+        //Nothing left in the table uses the shared values, so let them go with the entries.
+        LogEntry.FIELD_DICTIONARY.clear();
     }
 
     public int getMaximumEntries(){
         return preferences.getSetting(Globals.PREF_MAXIMUM_ENTRIES);
     }
 
+    public void shutdown(){
+        logTable.shutdown();
+    }
+
     public void reinitialize(){
         //TODO Reinitialize table model
     }
@@ -4,25 +4,47 @@ import com.nccgroup.loggerplusplus.filter.colorfilter.TableColorRule;
 import com.nccgroup.loggerplusplus.filter.colorfilter.ColorFilterListener;
 import com.nccgroup.loggerplusplus.filter.tag.Tag;
 import com.nccgroup.loggerplusplus.filter.tag.TagListener;
+import com.nccgroup.loggerplusplus.logentry.ColumnarEntryStore;
 import com.nccgroup.loggerplusplus.logentry.LogEntry;
 import com.nccgroup.loggerplusplus.logentry.LogEntryField;
 import com.nccgroup.loggerplusplus.logview.processor.LogProcessor;
 
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /* Extending AbstractTableModel to design the logTable behaviour based on the array list */
 public class LogTableModel extends AbstractTableModel implements ColorFilterListener, TagListener {
 
+    private static final int DISPLAY_CACHE_ROWS = 2048;
+    private static final Object NOT_CACHED = new Object();
+
     private final LogTableController controller;
-    private final List<LogEntry> entries;
+    private final LogEntryRingBuffer entries;
+    //Holds the commonly shown, sorted and filtered fields of the entries in the table, in columns rather than per entry.
+    private final ColumnarEntryStore columns;
+    //Display values of recently painted rows by row id, so repainting and scrolling don't derive them again.
+    //Values are indexed by field ordinal, and a row's values are dropped whenever an update event is fired for it.
+    private final LinkedHashMap<Long, Object[]> displayCache;
+    //Notified of entries once they have left the table, e.g. to release resources held for them.
+    private final List<Consumer<List<LogEntry>>> entriesRemovedListeners;
     private LogTableColumnModel columnModel;
 
     public LogTableModel(LogTableController controller, LogTableColumnModel columnModel) {
         this.controller = controller;
         this.columnModel = columnModel;
-        this.entries = Collections.synchronizedList(new ArrayList<>());
+        this.entries = new LogEntryRingBuffer();
+        this.columns = new ColumnarEntryStore();
+        this.entriesRemovedListeners = new CopyOnWriteArrayList<>();
+        this.displayCache = new LinkedHashMap<>(DISPLAY_CACHE_ROWS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Object[]> eldest) {
+                return size() > DISPLAY_CACHE_ROWS;
+            }
+        };
     }
 
     @Override
@@ -63,34 +85,88 @@ public class LogTableModel extends AbstractTableModel implements ColorFilterList
         removeLogEntries(Arrays.asList(logEntry));
     }
 
-    public void removeLogEntries(List<LogEntry> logEntry) {
+    /**
+     * Remove a batch of entries, firing a delete event per run of adjacent rows.
+     */
+    public synchronized void removeLogEntries(List<LogEntry> logEntry) {
+        int[] rows;
+        List<LogEntry> removed = new ArrayList<>();
         synchronized (entries) {
-            for (LogEntry entry : logEntry) {
-                int index = entries.indexOf(entry);
-                removeEntryAtRow(index);
+            rows = logEntry.stream().mapToInt(entries::indexOf).filter(index -> index >= 0).sorted().distinct().toArray();
+            //Remove from the end so the earlier rows keep their index.
+            for (int i = rows.length - 1; i >= 0; i--) {
+                removed.add(entries.remove(rows[i]));
+            }
+        }
+        notifyEntriesRemoved(removed);
+        int runEnd = rows.length - 1;
+        for (int i = rows.length - 1; i >= 0; i--) {
+            if (i == 0 || rows[i - 1] != rows[i] - 1) {
+                fireTableRowsDeleted(rows[i], rows[runEnd]);
+                runEnd = i - 1;
             }
         }
     }
 
     public synchronized void removeEntryAtRow(int row) {
-        entries.remove(row);
+        LogEntry removed;
+        synchronized (entries) {
+            removed = entries.remove(row);
+        }
+        notifyEntriesRemoved(Collections.singletonList(removed));
         this.fireTableRowsDeleted(row, row);
     }
 
-    public synchronized void addEntry(LogEntry logEntry) {
-        int index = entries.size();
-        entries.add(logEntry);
-        this.fireTableRowsInserted(index, index);
+    public void addEntry(LogEntry logEntry) {
+        addEntries(Collections.singletonList(logEntry));
+    }
+
+    /**
+     * Append a batch of entries, firing a single insert event, then trim the oldest entries
+     * beyond the maximum with a single delete event.
+     */
+    public synchronized void addEntries(List<LogEntry> logEntries) {
+        if (logEntries.isEmpty()) return;
+        int firstIndex, excess;
+        List<LogEntry> evicted = Collections.emptyList();
+        columns.attach(logEntries);
+        synchronized (entries) {
+            firstIndex = entries.size();
+            entries.addAll(logEntries);
+        }
+        this.fireTableRowsInserted(firstIndex, firstIndex + logEntries.size() - 1);
 
-        int excess = Math.max(entries.size() - controller.getMaximumEntries(), 0);
-        for (int excessIndex = 0; excessIndex < excess; excessIndex++) {
-            removeEntryAtRow(0); // Always remove the oldest entry
+        synchronized (entries) {
+            excess = Math.max(entries.size() - getMaxEntries(), 0);
+            if (excess > 0) {
+                evicted = entries.removeFirst(excess); // Always remove the oldest entries
+            }
+        }
+        notifyEntriesRemoved(evicted);
+        if (excess > 0) {
+            this.fireTableRowsDeleted(0, excess - 1);
         }
     }
 
-    public synchronized void updateEntry(LogEntry logEntry) {
-        int index = entries.indexOf(logEntry);
-        fireTableRowsUpdated(index, index);
+    public void updateEntry(LogEntry logEntry) {
+        updateEntries(Collections.singletonList(logEntry));
+    }
+
+    /**
+     * Fire update events for a batch of entries, merging adjacent rows into ranges.
+     */
+    public synchronized void updateEntries(Collection<LogEntry> logEntries) {
+        int[] rows;
+        synchronized (entries) {
+            rows = logEntries.stream().mapToInt(entries::indexOf).filter(index -> index >= 0).sorted().distinct().toArray();
+        }
+        int runStart = 0;
+        for (int i = 1; i <= rows.length; i++) {
+            if (i == rows.length || rows[i] != rows[i - 1] + 1) {
+                fireTableRowsUpdated(rows[runStart], rows[i - 1]);
+                runStart = i;
+            }
+        }
     }
 
     @Override
@@ -104,14 +180,76 @@ public class LogTableModel extends AbstractTableModel implements ColorFilterList
             return rowIndex + 1;
         }
 
-        Object value = entries.get(rowIndex).getValueByKey(column.getIdentifier());
+        if (column.getIdentifier() == LogEntryField.INSCOPE) {
+            //Read from Burp's scope on each call, which can change without any event for the row.
+            return getFieldValue(rowIndex, LogEntryField.INSCOPE);
+        }
 
+        int fieldIndex = column.getIdentifier().ordinal();
+        long rowId = entries.getId(rowIndex);
+        Object[] values;
+        synchronized (displayCache) {
+            values = displayCache.get(rowId);
+            if (values != null && values[fieldIndex] != NOT_CACHED) return values[fieldIndex];
+        }
+
+        Object value = getFieldValue(rowIndex, column.getIdentifier());
         if (value instanceof Date) {
-            return LogProcessor.LOGGER_DATE_FORMAT.format(value);
+            value = LogProcessor.formatLoggerDate((Date) value);
+        }
+
+        synchronized (displayCache) {
+            values = displayCache.get(rowId);
+            if (values == null) {
+                values = new Object[LogEntryField.values().length];
+                Arrays.fill(values, NOT_CACHED);
+                displayCache.put(rowId, values);
+            }
+            values[fieldIndex] = value;
         }
         return value;
     }
 
+    @Override
+    public void fireTableChanged(TableModelEvent e) {
+        if (e.getType() == TableModelEvent.UPDATE) {
+            invalidateDisplayValues(e.getFirstRow(), e.getLastRow());
+        }
+        super.fireTableChanged(e);
+    }
+
+    private void invalidateDisplayValues(int firstRow, int lastRow) {
+        if (firstRow == TableModelEvent.HEADER_ROW || lastRow - firstRow >= DISPLAY_CACHE_ROWS) {
+            synchronized (displayCache) {
+                displayCache.clear();
+            }
+            return;
+        }
+        long[] rowIds;
+        synchronized (entries) {
+            lastRow = Math.min(lastRow, entries.size() - 1);
+            rowIds = new long[Math.max(0, lastRow - firstRow + 1)];
+            for (int row = firstRow; row <= lastRow; row++) rowIds[row - firstRow] = entries.getId(row);
+        }
+        synchronized (displayCache) {
+            for (long rowId : rowIds) displayCache.remove(rowId);
+        }
+    }
+
+    /**
+     * @return The value the row is sorted by for the column, the raw field value rather than its display form
+     */
+    public Object getSortValue(int rowIndex, int colModelIndex) {
+        LogTableColumn column = (LogTableColumn) columnModel.getColumn(colModelIndex);
+        //Rows are numbered in the order they were added, which their row id already gives without deriving the number.
+        if (column.getIdentifier() == LogEntryField.NUMBER) return getRowId(rowIndex);
+        return getFieldValue(rowIndex, column.getIdentifier());
+    }
+
+    private Object getFieldValue(int rowIndex, LogEntryField field) {
+        return entries.get(rowIndex).getValueByKey(field);
+    }
+
     public List<LogEntry> getData() {
         return this.entries;
     }
@@ -120,11 +258,60 @@ public class LogTableModel extends AbstractTableModel implements ColorFilterList
         return this.entries.get(row);
     }
 
+    /**
+     * @return The current row of the entry, or -1 if it is no longer in the table
+     */
+    public int indexOf(LogEntry logEntry) {
+        return this.entries.indexOf(logEntry);
+    }
+
+    /**
+     * @return The row id of the entry at the row, which stays the same as older rows are evicted
+     */
+    public long getRowId(int row) {
+        return this.entries.getId(row);
+    }
+
+    /**
+     * @return The row ids of every row, in row order
+     */
+    public long[] getRowIds() {
+        return this.entries.getIds();
+    }
+
+    /**
+     * @return The current row of the entry with the row id, or -1 if it is no longer in the table
+     */
+    public int getRowForId(long rowId) {
+        return this.entries.indexOfId(rowId);
+    }
+
     public void reset() {
-        this.entries.clear();
+        List<LogEntry> removed;
+        synchronized (entries) {
+            removed = new ArrayList<>(this.entries);
+            this.entries.clear();
+        }
+        notifyEntriesRemoved(removed);
         this.fireTableDataChanged();
     }
 
+    /**
+     * Be notified of entries which have been removed or evicted from the table.
+     * Called on the thread which removed them, after they have left the table.
+     */
+    public void addEntriesRemovedListener(Consumer<List<LogEntry>> listener) {
+        this.entriesRemovedListeners.add(listener);
+    }
+
+    private void notifyEntriesRemoved(List<LogEntry> removed) {
+        if (removed.isEmpty()) return;
+        columns.detach(removed);
+        for (Consumer<List<LogEntry>> listener : entriesRemovedListeners) {
+            listener.accept(removed);
+        }
+    }
+
     // FilterListeners
     @Override
     public void onColorFilterChange(final TableColorRule filter) {
@@ -146,7 +333,7 @@ public class LogTableModel extends AbstractTableModel implements ColorFilterList
             @Override
             protected Void doInBackground() {
                 for (int i = 0; i < entries.size(); i++) {
-                    boolean wasPresent = entries.get(i).getMatchingColorFilters().remove(filter.getUuid());
+                    boolean wasPresent = entries.get(i).removeColorFilter(filter);
                     if (wasPresent) {
                         publish(i);
                     }
@@ -0,0 +1,497 @@
+package com.nccgroup.loggerplusplus.logview.logtable;
+
+import com.nccgroup.loggerplusplus.filter.logfilter.LogTableFilter;
+import com.nccgroup.loggerplusplus.logentry.FieldValueSource;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logview.LogTableFilterStatusListener;
+import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
+import lombok.extern.log4j.Log4j2;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Row sorter for the log table which maintains the filtered view incrementally.
+ * <p>
+ * Unlike {@link TableRowSorter}, which re-runs the filter over every row whenever the model changes,
+ * inserted rows are tested once and added to the view, and updated rows are re-tested individually.
+ * Only changing the filter tests every row, which for large tables is split across a dedicated executor
+ * in the background, reporting progress to {@link LogTableFilterStatusListener}s. Until it completes the
+ * previous view is kept, and starting another pass cancels it.
+ * <p>
+ * The view is held as the model's stable row ids rather than row indices, so evicting the oldest rows
+ * does not require renumbering the view. When sorted, the view's order is kept in a {@link SortedRowTree}
+ * so rows are inserted, moved and removed in O(log n) rather than re-sorting the table.
+ * <p>
+ * Rows are only re-tested when they change, so a filter using relative times, e.g. now-15m, is re-applied
+ * periodically as rows age out of it.
+ * All methods other than {@link #shutdown()} must be called on the EDT.
+ */
+@Log4j2
+public class LogTableRowSorter extends RowSorter<LogTableModel> {
+
+    /**
+     * Tables smaller than this are filtered immediately on the EDT, rather than in the background.
+     */
+    public static final int BACKGROUND_FILTER_THRESHOLD = 10000;
+    private static final int FILTER_CHUNK_SIZE = 4096;
+    private static final int RELATIVE_TIME_REFILTER_MILLIS = 5000;
+
+    private final LogTableModel model;
+    private final ThreadPoolExecutor filterExecutor;
+    private final List<LogTableFilterStatusListener> filterStatusListeners;
+    private final Timer relativeTimeRefilter;
+
+    //The filter most recently set, and the filter the current view was built with. These differ while a pass is running.
+    private LogTableFilter rowFilter;
+    private LogTableFilter appliedFilter;
+    private FilterPass filterPass;
+    private List<SortKey> sortKeys;
+
+    //Row ids of the view, in id order. Null when the view is the model itself, i.e. unfiltered and unsorted.
+    private long[] viewIds;
+    private int viewStart;
+    private int viewSize;
+    //The view order, if sorted.
+    private SortedRowTree sortedRows;
+
+    public LogTableRowSorter(LogTableModel model) {
+        this.model = model;
+        this.sortKeys = Collections.emptyList();
+        this.filterStatusListeners = new ArrayList<>();
+        int filterThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.filterExecutor = new ThreadPoolExecutor(filterThreads, filterThreads, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("LPP-Filter"));
+        this.filterExecutor.allowCoreThreadTimeOut(true);
+        this.relativeTimeRefilter = new Timer(RELATIVE_TIME_REFILTER_MILLIS, e -> refilterRelativeTime());
+        this.relativeTimeRefilter.start();
+    }
+
+    @Override
+    public LogTableModel getModel() {
+        return model;
+    }
+
+    public LogTableFilter getRowFilter() {
+        return rowFilter;
+    }
+
+    /**
+     * Set the filter, testing every row against it. Large tables are tested in the background,
+     * keeping the current view until complete.
+     */
+    public void setRowFilter(LogTableFilter filter) {
+        cancelFilterPass();
+        this.rowFilter = filter;
+        if (filter != null && model.getRowCount() >= BACKGROUND_FILTER_THRESHOLD) {
+            filterPass = new FilterPass(filter);
+            filterStatusListeners.forEach(LogTableFilterStatusListener::onFilteringStart);
+            filterPass.execute();
+        } else {
+            int[] lastViewToModel = getViewToModel();
+            appliedFilter = filter;
+            rebuildView();
+            fireRowSorterChanged(lastViewToModel);
+        }
+    }
+
+    /**
+     * Abandon a running filter pass, keeping the current view and its filter.
+     */
+    public void cancelFiltering() {
+        if (filterPass == null) return;
+        cancelFilterPass();
+        rowFilter = appliedFilter;
+    }
+
+    public boolean isFiltering() {
+        return filterPass != null;
+    }
+
+    private void cancelFilterPass() {
+        if (filterPass == null) return;
+        filterPass.cancel(false);
+        filterPass = null;
+        filterStatusListeners.forEach(LogTableFilterStatusListener::onFilteringFinish);
+    }
+
+    private void refilterRelativeTime() {
+        if (filterPass == null && appliedFilter != null && appliedFilter == rowFilter
+                && appliedFilter.getFilterExpression().usesRelativeTime()) {
+            setRowFilter(rowFilter);
+        }
+    }
+
+    public void addFilterStatusListener(LogTableFilterStatusListener listener) {
+        filterStatusListeners.add(listener);
+    }
+
+    public void removeFilterStatusListener(LogTableFilterStatusListener listener) {
+        filterStatusListeners.remove(listener);
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        SortOrder sortOrder = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+                && sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING) {
+            sortOrder = SortOrder.DESCENDING;
+        }
+        setSortKeys(Collections.singletonList(new SortKey(column, sortOrder)));
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = Collections.emptyList();
+        if (keys != null && !keys.isEmpty()) {
+            //Only a single sort key is supported.
+            SortKey key = keys.get(0);
+            if (key.getColumn() < 0 || key.getColumn() >= model.getColumnCount()) {
+                throw new IllegalArgumentException("Invalid sort key");
+            }
+            if (key.getSortOrder() != SortOrder.UNSORTED) newKeys = Collections.singletonList(key);
+        }
+        if (newKeys.equals(sortKeys)) return;
+        this.sortKeys = newKeys;
+        fireSortOrderChanged();
+        int[] lastViewToModel = getViewToModel();
+        rebuildView();
+        fireRowSorterChanged(lastViewToModel);
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    private boolean isSorted() {
+        return !sortKeys.isEmpty();
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewIds == null) return index;
+        if (index < 0 || index >= viewSize) throw new IndexOutOfBoundsException("Invalid index");
+        long id = sortedRows != null ? sortedRows.get(index) : viewIds[viewStart + index];
+        return model.getRowForId(id);
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (viewIds == null) return index;
+        if (index < 0 || index >= model.getRowCount()) throw new IndexOutOfBoundsException("Invalid index");
+        long id = model.getRowId(index);
+        if (sortedRows != null) return sortedRows.indexOf(id);
+        int position = findViewPosition(id);
+        return position >= 0 ? position : -1;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return viewIds == null ? model.getRowCount() : viewSize;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        allRowsChanged();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        if (filterPass != null) {
+            //Restart the pass against the new contents.
+            setRowFilter(rowFilter);
+            return;
+        }
+        rebuildView();
+        fireRowSorterChanged(null);
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        if (viewIds == null) return;
+        boolean changed = false;
+        for (int row = firstRow; row <= endRow; row++) {
+            if (!include(row)) continue;
+            long id = model.getRowId(row);
+            //Ids only increase, so new rows go at the end.
+            insertViewId(viewSize, id);
+            if (sortedRows != null) sortedRows.insert(id, getSortValue(row));
+            changed = true;
+        }
+        if (changed) fireRowSorterChanged(null);
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        if (viewIds == null) return;
+        int before = viewSize;
+        if (firstRow == 0) {
+            //Eviction of the oldest rows, which are at the start of the view.
+            long headId = model.getRowCount() > 0 ? model.getRowId(0) : Long.MAX_VALUE;
+            while (viewSize > 0 && viewIds[viewStart] < headId) {
+                if (sortedRows != null) sortedRows.remove(viewIds[viewStart]);
+                viewStart++;
+                viewSize--;
+            }
+        } else {
+            int kept = 0;
+            for (int i = 0; i < viewSize; i++) {
+                long id = viewIds[viewStart + i];
+                if (model.getRowForId(id) != -1) {
+                    viewIds[viewStart + kept++] = id;
+                } else if (sortedRows != null) {
+                    sortedRows.remove(id);
+                }
+            }
+            viewSize = kept;
+        }
+        if (viewSize != before) fireRowSorterChanged(null);
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        if (filterPass != null) {
+            for (int row = firstRow; row <= endRow; row++) filterPass.retest.add(model.getRowId(row));
+        }
+        if (viewIds == null) return;
+        boolean changed = false;
+        for (int row = firstRow; row <= endRow; row++) {
+            long id = model.getRowId(row);
+            int position = findViewPosition(id);
+            boolean included = include(row);
+            if (position >= 0 && !included) {
+                removeViewId(position);
+                if (sortedRows != null) sortedRows.remove(id);
+                changed = true;
+            } else if (position < 0 && included) {
+                insertViewId(-position - 1, id);
+                if (sortedRows != null) sortedRows.insert(id, getSortValue(row));
+                changed = true;
+            } else if (included && sortedRows != null) {
+                //Move the row if its sort value has changed.
+                Object value = getSortValue(row);
+                if (compareValues(sortedRows.getValue(id), value) != 0) {
+                    sortedRows.remove(id);
+                    sortedRows.insert(id, value);
+                    changed = true;
+                }
+            }
+        }
+        if (changed) fireRowSorterChanged(null);
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        rowsUpdated(firstRow, endRow);
+    }
+
+    private boolean include(int row) {
+        return appliedFilter == null || appliedFilter.getFilterExpression().matches(model.getRow(row));
+    }
+
+    private Object getSortValue(int row) {
+        return model.getSortValue(row, sortKeys.get(0).getColumn());
+    }
+
+    /**
+     * @return The position of the id amongst the view's ids in id order, or (-(insertion point) - 1) if not present
+     */
+    private int findViewPosition(long id) {
+        int position = Arrays.binarySearch(viewIds, viewStart, viewStart + viewSize, id);
+        return position >= 0 ? position - viewStart : position + viewStart;
+    }
+
+    /**
+     * Rebuild the view from scratch with the applied filter and sort keys.
+     */
+    private void rebuildView() {
+        if (appliedFilter == null && !isSorted()) {
+            viewIds = null;
+            viewStart = viewSize = 0;
+            sortedRows = null;
+            return;
+        }
+        Predicate<FieldValueSource> matcher = appliedFilter != null ? appliedFilter.getFilterExpression().getMatcher() : null;
+        int rowCount = model.getRowCount();
+        long[] ids = new long[Math.max(16, rowCount)];
+        int size = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (matcher == null || matcher.test(model.getRow(row))) ids[size++] = model.getRowId(row);
+        }
+        setView(ids, size);
+    }
+
+    private void setView(long[] ids, int size) {
+        this.viewIds = ids;
+        this.viewStart = 0;
+        this.viewSize = size;
+        this.sortedRows = null;
+        if (isSorted()) {
+            SortedRowTree sortedRows = new SortedRowTree(sortKeys.get(0).getSortOrder());
+            for (int i = 0; i < size; i++) sortedRows.insert(ids[i], getSortValue(model.getRowForId(ids[i])));
+            this.sortedRows = sortedRows;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static int compareValues(Object a, Object b) {
+        if (a == b) return 0;
+        if (a == null) return -1;
+        if (b == null) return 1;
+        if (a instanceof String && b instanceof String) return ((String) a).compareToIgnoreCase((String) b);
+        if (a instanceof Comparable && a.getClass() == b.getClass()) return ((Comparable<Object>) a).compareTo(b);
+        return a.toString().compareToIgnoreCase(b.toString());
+    }
+
+    private void insertViewId(int position, long id) {
+        if (viewStart + viewSize == viewIds.length) {
+            if (viewStart > viewIds.length / 2) {
+                System.arraycopy(viewIds, viewStart, viewIds, 0, viewSize);
+            } else {
+                long[] grown = new long[viewIds.length * 2];
+                System.arraycopy(viewIds, viewStart, grown, 0, viewSize);
+                viewIds = grown;
+            }
+            viewStart = 0;
+        }
+        int index = viewStart + position;
+        System.arraycopy(viewIds, index, viewIds, index + 1, viewSize - position);
+        viewIds[index] = id;
+        viewSize++;
+    }
+
+    private void removeViewId(int position) {
+        int index = viewStart + position;
+        System.arraycopy(viewIds, index + 1, viewIds, index, viewSize - position - 1);
+        viewSize--;
+    }
+
+    /**
+     * @return The model index of each view row, as needed by listeners to map the previous selection
+     */
+    private int[] getViewToModel() {
+        if (viewIds == null) return null;
+        int[] viewToModel = new int[viewSize];
+        for (int i = 0; i < viewSize; i++) viewToModel[i] = convertRowIndexToModel(i);
+        return viewToModel;
+    }
+
+    private void applyFilterPass(FilterPass pass, long[] snapshotIds, boolean[] matched) {
+        int[] lastViewToModel = getViewToModel();
+        appliedFilter = pass.filter;
+        filterPass = null;
+
+        long lastSnapshotId = snapshotIds.length > 0 ? snapshotIds[snapshotIds.length - 1] : Long.MIN_VALUE;
+        int rowCount = model.getRowCount();
+        long[] ids = new long[Math.max(16, rowCount)];
+        int size = 0;
+        int snapshotIndex = 0;
+        for (int row = 0; row < rowCount; row++) {
+            long id = model.getRowId(row);
+            boolean included;
+            if (id > lastSnapshotId || pass.retest.contains(id)) {
+                //Added or updated since the snapshot was taken.
+                included = include(row);
+            } else {
+                //Both are in id order, and every current row at or before the last snapshot id was in the snapshot.
+                while (snapshotIds[snapshotIndex] < id) snapshotIndex++;
+                included = matched[snapshotIndex];
+            }
+            if (included) ids[size++] = id;
+        }
+        setView(ids, size);
+
+        filterStatusListeners.forEach(LogTableFilterStatusListener::onFilteringFinish);
+        fireRowSorterChanged(lastViewToModel);
+    }
+
+    /**
+     * Stop the filter executor, e.g. when the extension is unloaded.
+     */
+    public void shutdown() {
+        relativeTimeRefilter.stop();
+        filterExecutor.shutdownNow();
+    }
+
+    /**
+     * Tests a snapshot of the table against a filter, split into chunks across the filter executor.
+     */
+    private class FilterPass extends SwingWorker<boolean[], Integer> {
+
+        private final LogTableFilter filter;
+        private final LogEntry[] entries;
+        private final long[] ids;
+        //Rows updated while the pass runs, to be tested again once it completes.
+        private final HashSet<Long> retest;
+        private final AtomicInteger tested;
+
+        private FilterPass(LogTableFilter filter) {
+            this.filter = filter;
+            this.retest = new HashSet<>();
+            this.tested = new AtomicInteger();
+            List<LogEntry> data = model.getData();
+            synchronized (data) {
+                this.ids = model.getRowIds();
+                this.entries = data.toArray(new LogEntry[0]);
+            }
+        }
+
+        @Override
+        protected boolean[] doInBackground() throws Exception {
+            boolean[] matched = new boolean[entries.length];
+            Predicate<FieldValueSource> matcher = filter.getFilterExpression().getMatcher();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int start = 0; start < entries.length; start += FILTER_CHUNK_SIZE) {
+                int chunkStart = start, chunkEnd = Math.min(entries.length, start + FILTER_CHUNK_SIZE);
+                Runnable filterChunk = () -> {
+                    for (int i = chunkStart; i < chunkEnd && !isCancelled(); i++) {
+                        matched[i] = matcher.test(entries[i]);
+                    }
+                    publish(tested.addAndGet(chunkEnd - chunkStart));
+                };
+                try {
+                    futures.add(filterExecutor.submit(filterChunk));
+                } catch (RejectedExecutionException e) {
+                    filterChunk.run();
+                }
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    log.error("Filtering failed", e.getCause());
+                }
+            }
+            return matched;
+        }
+
+        @Override
+        protected void process(List<Integer> progress) {
+            if (filterPass != this) return;
+            int rowsTested = progress.get(progress.size() - 1);
+            filterStatusListeners.forEach(listener -> listener.onFilteringProgress(rowsTested, entries.length));
+        }
+
+        @Override
+        protected void done() {
+            if (filterPass != this || isCancelled()) return;
+            try {
+                applyFilterPass(this, ids, get());
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Filtering failed", e);
+                filterPass = null;
+                filterStatusListeners.forEach(LogTableFilterStatusListener::onFilteringFinish);
+            }
+        }
+    }
+}
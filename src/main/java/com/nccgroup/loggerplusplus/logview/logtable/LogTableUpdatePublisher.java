@@ -0,0 +1,101 @@
+package com.nccgroup.loggerplusplus.logview.logtable;
+
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects table mutations from any thread and applies them to the {@link LogTableModel} in batches on the EDT.
+ * <p>
+ * Firing a separate event per row floods the EDT under heavy traffic, so mutations are buffered and flushed
+ * at most once per {@link #FLUSH_INTERVAL_MS}. Consecutive mutations of the same kind are applied together,
+ * so listeners receive range events rather than one event per row. Mutations are always applied in the order
+ * they were published.
+ */
+public class LogTableUpdatePublisher {
+
+    public static final int FLUSH_INTERVAL_MS = 50;
+
+    private enum Operation { ADD, UPDATE, REMOVE }
+
+    private static class Mutation {
+        private final Operation operation;
+        private final LogEntry logEntry;
+
+        private Mutation(Operation operation, LogEntry logEntry) {
+            this.operation = operation;
+            this.logEntry = logEntry;
+        }
+    }
+
+    private final LogTableModel model;
+    private final ConcurrentLinkedQueue<Mutation> pending;
+    private final AtomicBoolean flushScheduled;
+    private final Timer flushTimer;
+
+    public LogTableUpdatePublisher(LogTableModel model) {
+        this.model = model;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.flushScheduled = new AtomicBoolean(false);
+        this.flushTimer = new Timer(FLUSH_INTERVAL_MS, e -> flush());
+        this.flushTimer.setRepeats(false);
+    }
+
+    public void publishAdd(LogEntry logEntry) {
+        publish(new Mutation(Operation.ADD, logEntry));
+    }
+
+    public void publishUpdate(LogEntry logEntry) {
+        publish(new Mutation(Operation.UPDATE, logEntry));
+    }
+
+    public void publishRemove(LogEntry logEntry) {
+        publish(new Mutation(Operation.REMOVE, logEntry));
+    }
+
+    private void publish(Mutation mutation) {
+        pending.add(mutation);
+        //Only the first mutation since the last flush needs to schedule one.
+        if (flushScheduled.compareAndSet(false, true)) {
+            flushTimer.restart();
+        }
+    }
+
+    /**
+     * Discard any mutations which have not been applied yet. Must be called on the EDT.
+     */
+    public void clear() {
+        pending.clear();
+    }
+
+    private void flush() {
+        //Clear the flag before draining, anything published from here on schedules another flush.
+        flushScheduled.set(false);
+
+        List<LogEntry> batch = new ArrayList<>();
+        Operation batchOperation = null;
+        Mutation mutation;
+        while ((mutation = pending.poll()) != null) {
+            if (mutation.operation != batchOperation) {
+                apply(batchOperation, batch);
+                batch = new ArrayList<>();
+                batchOperation = mutation.operation;
+            }
+            batch.add(mutation.logEntry);
+        }
+        apply(batchOperation, batch);
+    }
+
+    private void apply(Operation operation, List<LogEntry> entries) {
+        if (operation == null || entries.isEmpty()) return;
+        switch (operation) {
+            case ADD -> model.addEntries(entries);
+            case UPDATE -> model.updateEntries(entries);
+            case REMOVE -> model.removeLogEntries(entries);
+        }
+    }
+}
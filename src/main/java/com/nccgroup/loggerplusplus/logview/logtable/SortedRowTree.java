@@ -0,0 +1,190 @@
+package com.nccgroup.loggerplusplus.logview.logtable;
+
+import javax.swing.*;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Order statistic tree of the rows in a sorted view, keyed on each row's sort value and then its row id.
+ * <p>
+ * Rows can be inserted and removed, and translated between their position in the view and their row id,
+ * in O(log n). The tree is a treap, with each node also holding the size of its subtree so a position can be
+ * found by descending from the root. Each row's sort value is held with it, so a row whose value has changed
+ * can still be found and removed under its old value.
+ */
+class SortedRowTree {
+
+    private static final class Node {
+        private final long id;
+        private final Object value;
+        private final int priority;
+        private int size;
+        private Node left;
+        private Node right;
+
+        private Node(long id, Object value) {
+            this.id = id;
+            this.value = value;
+            this.priority = ThreadLocalRandom.current().nextInt();
+            this.size = 1;
+        }
+    }
+
+    private final boolean descending;
+    private final HashMap<Long, Node> nodes;
+    private Node root;
+
+    SortedRowTree(SortOrder sortOrder) {
+        this.descending = sortOrder == SortOrder.DESCENDING;
+        this.nodes = new HashMap<>();
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean contains(long id) {
+        return nodes.containsKey(id);
+    }
+
+    /**
+     * @return The sort value the row was inserted with
+     */
+    Object getValue(long id) {
+        Node node = nodes.get(id);
+        return node != null ? node.value : null;
+    }
+
+    void insert(long id, Object value) {
+        Node node = new Node(id, value);
+        if (nodes.putIfAbsent(id, node) != null) throw new IllegalStateException("Row " + id + " is already in the tree");
+        root = insert(root, node);
+    }
+
+    /**
+     * @return If the row was in the tree
+     */
+    boolean remove(long id) {
+        Node node = nodes.remove(id);
+        if (node == null) return false;
+        root = remove(root, node);
+        return true;
+    }
+
+    /**
+     * @return The row id at the position in the view
+     */
+    long get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Invalid index");
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.id;
+            }
+        }
+    }
+
+    /**
+     * @return The position of the row in the view, or -1 if it is not in the tree
+     */
+    int indexOf(long id) {
+        Node target = nodes.get(id);
+        if (target == null) return -1;
+        int index = 0;
+        Node node = root;
+        while (node != target) {
+            if (compare(target, node) < 0) {
+                node = node.left;
+            } else {
+                index += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return index + size(node.left);
+    }
+
+    void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    private int compare(Node a, Node b) {
+        int result = LogTableRowSorter.compareValues(a.value, b.value);
+        if (descending) result = -result;
+        //Equal values are always ordered by row id, i.e. the order they were added.
+        return result != 0 ? result : Long.compare(a.id, b.id);
+    }
+
+    private Node insert(Node parent, Node node) {
+        if (parent == null) return node;
+        parent.size++;
+        if (compare(node, parent) < 0) {
+            parent.left = insert(parent.left, node);
+            if (parent.left.priority > parent.priority) parent = rotateRight(parent);
+        } else {
+            parent.right = insert(parent.right, node);
+            if (parent.right.priority > parent.priority) parent = rotateLeft(parent);
+        }
+        return parent;
+    }
+
+    private Node remove(Node parent, Node node) {
+        if (parent == node) return merge(node.left, node.right);
+        parent.size--;
+        if (compare(node, parent) < 0) {
+            parent.left = remove(parent.left, node);
+        } else {
+            parent.right = remove(parent.right, node);
+        }
+        return parent;
+    }
+
+    /**
+     * Join two subtrees, where every node in the left precedes every node in the right.
+     */
+    private Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    private Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -0,0 +1,338 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.proxy.http.InterceptedResponse;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.Status;
+import com.nccgroup.loggerplusplus.util.Globals.CaptureOverloadPolicy;
+import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
+import com.nccgroup.loggerplusplus.util.PausableThreadPoolExecutor;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Date;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs the work for captured entries on the fixed capture pool: a task per captured request, which also
+ * processes its response if that has arrived by then, and a task per response arriving later.
+ * <p>
+ * No task waits on another. A request task never waits for its response, and a response arriving while its
+ * entry is being processed is handed to the task already processing it, see {@link PendingEntry}. So the
+ * pool's fixed threads keep making progress however many entries are in flight.
+ * What is done with each entry is left to the {@link EntryHandler}.
+ */
+@Log4j2
+class CaptureTaskRunner {
+
+    /**
+     * What the capture tasks do with each entry.
+     */
+    interface EntryHandler {
+        /**
+         * @return The processed entry, or null if it should not be logged
+         */
+        LogEntry processEntry(LogEntry logEntry);
+
+        void addNewEntry(LogEntry logEntry);
+
+        void updateExistingEntry(LogEntry logEntry);
+
+        void removeExistingEntry(LogEntry logEntry);
+    }
+
+    //How often a thread blocked on a full capture queue checks whether the pool has been paused or shut down.
+    private static final long CAPTURE_QUEUE_POLL_MILLIS = 100;
+
+    private final EntryCorrelationTable<PendingEntry> pendingEntries;
+    private final EntryHandler entryHandler;
+    private final Supplier<CaptureOverloadPolicy> overloadPolicy;
+    private final LongSupplier responseTimeoutMillis;
+    private final PausableThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final AtomicLong droppedEntries;
+    private final AtomicLong skippedResponses;
+
+    CaptureTaskRunner(int threads, int queueCapacity, EntryCorrelationTable<PendingEntry> pendingEntries, EntryHandler entryHandler,
+                      Supplier<CaptureOverloadPolicy> overloadPolicy, LongSupplier responseTimeoutMillis) {
+        this.pendingEntries = pendingEntries;
+        this.entryHandler = entryHandler;
+        this.overloadPolicy = overloadPolicy;
+        this.responseTimeoutMillis = responseTimeoutMillis;
+        this.queueCapacity = queueCapacity;
+        this.droppedEntries = new AtomicLong(0);
+        this.skippedResponses = new AtomicLong(0);
+
+        //Fixed pool with a bounded queue, so bursts from Intruder/Scanner can't spawn a thread per request.
+        //What happens when the queue fills up is controlled by the overload policy.
+        this.executor = new PausableThreadPoolExecutor(threads, threads,
+                30L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), new NamedThreadFactory("LPP-LogManager"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Register the entry in the correlation table and submit a task to process it.
+     *
+     * @param logEntry The entry to process
+     * @param preferredIdentifier The identifier to use for the entry if it is not already in use
+     * @return The identifier assigned to the entry, or null if the entry was dropped
+     */
+    Integer submitRequest(final LogEntry logEntry, int preferredIdentifier) {
+        final PendingEntry pendingEntry = new PendingEntry(logEntry);
+        long timestamp = logEntry.getRequestDateTime().getTime();
+        //Register before submitting, so the response can always find the entry.
+        final int identifier = pendingEntries.register(preferredIdentifier, pendingEntry, timestamp, timestamp + responseTimeoutMillis.getAsLong());
+        logEntry.setIdentifier(identifier);
+        log.debug("Adding log process request for ID: " + identifier);
+
+        if (!submitCaptureTask(() -> processPendingRequest(pendingEntry), false)) {
+            pendingEntries.remove(identifier);
+            return null;
+        }
+        return identifier;
+    }
+
+    /**
+     * Hand a response to its entry.
+     * If the entry's request has not been processed yet, the request task processes the response too.
+     * Otherwise, a task is submitted to process the response.
+     * Unknown identifiers signify the response arrived after the pending request was cleaned up.
+     *
+     * @param entryIdentifier The unique identifier for the log entry.
+     * @param arrivalTime     The arrival time of the response.
+     * @param response The HTTP request response object.
+     */
+    void submitResponse(Integer entryIdentifier, Date arrivalTime, HttpResponse response) {
+        log.debug("Updating entry with response for ID: " + entryIdentifier);
+        PendingEntry pendingEntry = entryIdentifier != null ? pendingEntries.get(entryIdentifier) : null;
+        if (pendingEntry == null) {
+            //Unknown Identifier. Potentially for a request which was ignored or cleaned up already?
+            return;
+        }
+
+        if (pendingEntry.offerResponse(response, arrivalTime) == PendingEntry.ResponseAction.SUBMIT) {
+            //Request has already been processed and logged. Submit a job for the processing of its response.
+            ResponseTask responseTask = new ResponseTask(pendingEntry);
+            if (!submitCaptureTask(responseTask, true)) {
+                responseTask.skip();
+            }
+        }
+        //Otherwise, the request job will pick up the response when it gets to it.
+    }
+
+    /**
+     * Process a newly captured request, along with its response if it has already arrived.
+     * If the response arrives while the request is being processed, it is processed here too,
+     * rather than submitting another job which would have to wait for this one.
+     */
+    private void processPendingRequest(PendingEntry pendingEntry) {
+        if (!pendingEntry.startProcessing()) return;
+        LogEntry logEntry = pendingEntry.logEntry;
+        try {
+            //Response may have already arrived, if so it can be processed in the first pass.
+            PendingEntry.PendingResponse pendingResponse = pendingEntry.takeResponse();
+            if (pendingResponse != null) applyResponse(logEntry, pendingResponse);
+
+            LogEntry result = entryHandler.processEntry(logEntry);
+            if (result == null) {
+                //Ignored entry. Skip it.
+                finishPendingEntry(pendingEntry);
+                return;
+            }
+
+            entryHandler.addNewEntry(logEntry);
+
+            if (result.getStatus() == Status.PROCESSED) {
+                //If the entry was fully processed, remove it from the processing list.
+                finishPendingEntry(pendingEntry);
+                return;
+            }
+        } catch (Exception e) {
+            abandonPendingEntry(pendingEntry, e);
+            return;
+        }
+
+        if (!pendingEntry.finishRequest()) {
+            //Response arrived while we were busy, process it now.
+            processPendingResponse(pendingEntry);
+        }
+        //Otherwise, we're waiting on the response. A job will be submitted for it when it arrives.
+    }
+
+    /**
+     * Process the response for an entry which has already been processed and logged.
+     * Keeps going while further responses arrive for the entry during processing.
+     */
+    private void processPendingResponse(PendingEntry pendingEntry) {
+        LogEntry logEntry = pendingEntry.logEntry;
+        try {
+            do {
+                PendingEntry.PendingResponse pendingResponse = pendingEntry.takeResponse();
+                if (pendingResponse == null) continue;
+
+                applyResponse(logEntry, pendingResponse);
+                LogEntry updatedEntry = entryHandler.processEntry(logEntry);
+
+                if (updatedEntry == null) {
+                    //Response must have been filtered out. Delete the existing entry and stop processing
+                    entryHandler.removeExistingEntry(logEntry);
+                    finishPendingEntry(pendingEntry);
+                    return;
+                }
+
+                if (logEntry.getStatus() == Status.PROCESSED) {
+                    //If the entry was fully processed, remove it from the processing list.
+                    finishPendingEntry(pendingEntry);
+                    entryHandler.updateExistingEntry(logEntry);
+                    return;
+                }
+
+                entryHandler.updateExistingEntry(logEntry);
+            } while (pendingEntry.awaitResponse());
+        } catch (Exception e) {
+            abandonPendingEntry(pendingEntry, e);
+        }
+    }
+
+    private void applyResponse(LogEntry logEntry, PendingEntry.PendingResponse pendingResponse) {
+        if (pendingResponse.response instanceof InterceptedResponse) {
+            // Raises java.lang.UnsupportedOperationException: Not yet implemented
+//            logEntry.setClientIP(String.valueOf(((InterceptedResponse) pendingResponse.response).sourceIpAddress()));
+            logEntry.setListenerInterface(((InterceptedResponse) pendingResponse.response).listenerInterface());
+        }
+
+        //Update the response with the new one, and tell it when it arrived.
+        logEntry.addResponse(pendingResponse.response, pendingResponse.arrivalTime);
+    }
+
+    private void finishPendingEntry(PendingEntry pendingEntry) {
+        pendingEntry.complete();
+        pendingEntries.remove(pendingEntry.logEntry.getIdentifier());
+    }
+
+    /**
+     * Stop tracking an entry whose processing failed, otherwise it would never leave the processing
+     * state and the cleanup task would keep rescheduling it.
+     */
+    private void abandonPendingEntry(PendingEntry pendingEntry, Exception e) {
+        log.error("Could not process entry " + pendingEntry.logEntry.getIdentifier(), e);
+        finishPendingEntry(pendingEntry);
+    }
+
+    /**
+     * Hand a task to the capture pool. If the queue is full, the overload policy decides whether the
+     * calling Burp thread waits for space, or the work is discarded and counted.
+     * Burp's thread is never left waiting while an import has the pool paused, since nothing would free up space.
+     *
+     * @param task The task to execute
+     * @param isResponse If the task only processes a response for an entry which has already been logged
+     * @return If the task was accepted
+     */
+    private boolean submitCaptureTask(Runnable task, boolean isResponse) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) return false;
+        }
+
+        CaptureOverloadPolicy overloadPolicy = this.overloadPolicy.get();
+        if (overloadPolicy == CaptureOverloadPolicy.DROP) {
+            droppedEntries.incrementAndGet();
+            return false;
+        }
+        if (overloadPolicy == CaptureOverloadPolicy.REQUEST_ONLY) {
+            if (isResponse) {
+                //The entry is already in the table, just leave it without its response.
+                skippedResponses.incrementAndGet();
+                return false;
+            }
+            //Make room for the request by shedding a queued response, rather than holding up Burp.
+            if (shedQueuedResponse() && executor.getQueue().offer(task)) return true;
+            droppedEntries.incrementAndGet();
+            return false;
+        }
+
+        //Block the submitting thread until a worker frees up space.
+        //Workers are prestarted, so queueing directly is safe.
+        try {
+            while (!executor.isShutdown() && !executor.isPaused()) {
+                if (executor.getQueue().offer(task, CAPTURE_QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedEntries.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Remove a queued response task, leaving its entry in the table without the response.
+     * @return If a response task was removed
+     */
+    private boolean shedQueuedResponse() {
+        for (Runnable queued : executor.getQueue()) {
+            if (queued instanceof ResponseTask && executor.remove(queued)) {
+                ((ResponseTask) queued).skip();
+                skippedResponses.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    PausableThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    long getDroppedEntryCount() {
+        return droppedEntries.get();
+    }
+
+    long getSkippedResponseCount() {
+        return skippedResponses.get();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Processes the response for an entry which has already been logged.
+     * Kept distinct from request tasks so it can be shed from the queue under load.
+     */
+    private class ResponseTask implements Runnable {
+        private final PendingEntry pendingEntry;
+
+        ResponseTask(PendingEntry pendingEntry) {
+            this.pendingEntry = pendingEntry;
+        }
+
+        @Override
+        public void run() {
+            processPendingResponse(pendingEntry);
+        }
+
+        /**
+         * Discard the response without processing it, so the entry can time out normally.
+         */
+        void skip() {
+            do {
+                pendingEntry.takeResponse();
+            } while (pendingEntry.awaitResponse());
+        }
+    }
+}
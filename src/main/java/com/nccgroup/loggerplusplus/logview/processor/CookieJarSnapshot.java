@@ -0,0 +1,117 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+import burp.api.montoya.http.message.Cookie;
+import com.nccgroup.loggerplusplus.logentry.LogEntry.CookieJarStatus;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * A point-in-time copy of Burp's cookie jar, indexed by domain.
+ * <p>
+ * Reading the jar from Burp copies every cookie, so rather than reading it per request the snapshot is
+ * reused and refreshed at most once per {@link #REFRESH_INTERVAL_MILLIS}. The refresh is done by whichever
+ * thread first notices the snapshot is stale, other threads carry on using the previous version meanwhile.
+ */
+public class CookieJarSnapshot {
+
+    public static final long REFRESH_INTERVAL_MILLIS = 1000;
+
+    private static class Snapshot {
+        private final long version;
+        private final long takenAt;
+        private final Map<String, String[][]> cookiesByDomain;
+
+        private Snapshot(long version, long takenAt, Map<String, String[][]> cookiesByDomain) {
+            this.version = version;
+            this.takenAt = takenAt;
+            this.cookiesByDomain = cookiesByDomain;
+        }
+    }
+
+    private final Supplier<List<Cookie>> cookieSource;
+    private final AtomicBoolean refreshing;
+    private volatile Snapshot snapshot;
+
+    public CookieJarSnapshot(Supplier<List<Cookie>> cookieSource) {
+        this.cookieSource = cookieSource;
+        this.refreshing = new AtomicBoolean(false);
+        //Taken at the epoch, so the first classification always reads the jar.
+        this.snapshot = new Snapshot(0, 0, Collections.emptyMap());
+    }
+
+    /**
+     * Compare the cookies sent with a request against the jar cookies for its host.
+     *
+     * @param hostname The host the request was sent to
+     * @param sentCookies The value of the request's cookie header
+     * @return YES if every jar cookie for the host was sent, PARTIALLY if only some were, otherwise NO
+     */
+    public CookieJarStatus classify(String hostname, String sentCookies) {
+        String[][] jarCookies = getSnapshot().cookiesByDomain.get(hostname);
+        if (jarCookies == null || sentCookies == null || sentCookies.isEmpty()) return CookieJarStatus.NO;
+
+        Map<String, Set<String>> sent = parseCookieHeader(sentCookies);
+        boolean anyMatched = false;
+        boolean oneNotMatched = false;
+        for (String[] jarCookie : jarCookies) {
+            Set<String> sentValues = sent.get(jarCookie[0]);
+            if (sentValues != null && sentValues.contains(jarCookie[1])) {
+                anyMatched = true;
+            } else {
+                oneNotMatched = true;
+            }
+            if (anyMatched && oneNotMatched) return CookieJarStatus.PARTIALLY;
+        }
+        return anyMatched ? CookieJarStatus.YES : CookieJarStatus.NO;
+    }
+
+    /**
+     * @return The version of the current snapshot, incremented on each refresh
+     */
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = this.snapshot;
+        long now = System.currentTimeMillis();
+        if (now - current.takenAt >= REFRESH_INTERVAL_MILLIS && refreshing.compareAndSet(false, true)) {
+            try {
+                current = this.snapshot = new Snapshot(current.version + 1, now, index(cookieSource.get()));
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return current;
+    }
+
+    private static Map<String, String[][]> index(List<Cookie> cookies) {
+        Map<String, List<String[]>> grouped = new HashMap<>();
+        for (Cookie cookie : cookies) {
+            grouped.computeIfAbsent(cookie.domain(), domain -> new ArrayList<>())
+                    .add(new String[]{cookie.name(), cookie.value()});
+        }
+        Map<String, String[][]> indexed = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((domain, domainCookies) -> indexed.put(domain, domainCookies.toArray(new String[0][])));
+        return indexed;
+    }
+
+    private static Map<String, Set<String>> parseCookieHeader(String header) {
+        Map<String, Set<String>> cookies = new HashMap<>();
+        int start = 0;
+        while (start < header.length()) {
+            int end = header.indexOf(';', start);
+            if (end == -1) end = header.length();
+            int equals = header.indexOf('=', start);
+            if (equals != -1 && equals < end) {
+                String name = header.substring(start, equals).trim();
+                String value = header.substring(equals + 1, end).trim();
+                cookies.computeIfAbsent(name, n -> new HashSet<>(2)).add(value);
+            }
+            start = end + 1;
+        }
+        return cookies;
+    }
+}
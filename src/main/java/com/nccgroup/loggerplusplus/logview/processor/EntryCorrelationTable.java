@@ -0,0 +1,290 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+import java.util.Arrays;
+
+/**
+ * Correlates in-flight requests with their responses.
+ * <p>
+ * Keys are non-negative ints (request identity hashcodes) stored unboxed in open-addressed tables,
+ * with the registration timestamp and expiry deadline alongside. The table is split into lock-striped
+ * segments, each with its own hashed timer wheel, so an expiry pass only visits the wheel slots which
+ * have come due instead of walking every pending entry.
+ * <p>
+ * Identity hashcodes are not unique. {@link #register(int, Object, long, long)} probes for the next free
+ * key when the preferred one is already in use and returns the key actually assigned, which must be used
+ * as the identifier for the response lookup.
+ *
+ * @param <V> The value type
+ */
+public class EntryCorrelationTable<V> {
+
+    /**
+     * Called for each entry whose deadline has passed. Invoked while holding the segment lock, so
+     * implementations must not call back into the table.
+     */
+    public interface ExpiryHandler<V> {
+        /**
+         * @param key The key of the expired entry
+         * @param value The expired value
+         * @param timestamp The timestamp the entry was registered with
+         * @param now The current time
+         * @return A new deadline to keep the entry for longer, or a negative value to remove it
+         */
+        long onExpired(int key, V value, long timestamp, long now);
+    }
+
+    public static final long TICK_MILLIS = 1000;
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int WHEEL_SIZE = 1024;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Segment<V>[] segments;
+
+    public EntryCorrelationTable() {
+        long startTick = System.currentTimeMillis() / TICK_MILLIS;
+        @SuppressWarnings("unchecked")
+        Segment<V>[] segments = (Segment<V>[]) new Segment<?>[SEGMENT_COUNT];
+        this.segments = segments;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment<>(startTick);
+        }
+    }
+
+    /**
+     * Register a value, using the preferred key if it is free or the next free key after it otherwise.
+     *
+     * @param preferredKey The desired key, must be non-negative
+     * @param value The value to store
+     * @param timestamp The time the value was registered
+     * @param deadline The time after which the expiry handler should be called for the value
+     * @return The key actually assigned to the value
+     */
+    public int register(int preferredKey, V value, long timestamp, long deadline) {
+        int key = preferredKey & Integer.MAX_VALUE;
+        while (!segmentFor(key).putIfAbsent(key, value, timestamp, deadline)) {
+            key = (key + 1) & Integer.MAX_VALUE;
+        }
+        return key;
+    }
+
+    public V get(int key) {
+        return segmentFor(key).get(key);
+    }
+
+    public V remove(int key) {
+        return segmentFor(key).remove(key);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Advance the timer wheels to the given time, calling the handler for each entry whose deadline has passed.
+     *
+     * @param now The current time
+     * @param handler Decides whether each expired entry is removed or kept for longer
+     */
+    public void expire(long now, ExpiryHandler<V> handler) {
+        for (Segment<V> segment : segments) {
+            segment.expire(now, handler);
+        }
+    }
+
+    private Segment<V> segmentFor(int key) {
+        return segments[mix(key) >>> (32 - SEGMENT_BITS)];
+    }
+
+    private static int mix(int key) {
+        return key * 0x9E3779B9;
+    }
+
+    private static long tickOf(long time) {
+        return Math.floorDiv(time, TICK_MILLIS);
+    }
+
+    private static final class Segment<V> {
+        private int[] keys;
+        private Object[] values;
+        private long[] timestamps;
+        private long[] deadlines;
+        private boolean[] used;
+        private int size;
+
+        //Timer wheel. Slots hold keys only, entries which were removed or rescheduled are skipped lazily.
+        private final int[][] wheel;
+        private final int[] wheelSizes;
+        private long currentTick;
+
+        Segment(long startTick) {
+            allocate(INITIAL_CAPACITY);
+            this.wheel = new int[WHEEL_SIZE][];
+            this.wheelSizes = new int[WHEEL_SIZE];
+            this.currentTick = startTick;
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+            timestamps = new long[capacity];
+            deadlines = new long[capacity];
+            used = new boolean[capacity];
+        }
+
+        private int indexOf(int key) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (used[i]) {
+                if (keys[i] == key) return i;
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        synchronized boolean putIfAbsent(int key, V value, long timestamp, long deadline) {
+            if (indexOf(key) >= 0) return false;
+            if ((size + 1) * 2 > keys.length) resize(keys.length * 2);
+            insert(key, value, timestamp, deadline);
+            size++;
+            schedule(key, deadline);
+            return true;
+        }
+
+        private void insert(int key, Object value, long timestamp, long deadline) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (used[i]) i = (i + 1) & mask;
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+            timestamps[i] = timestamp;
+            deadlines[i] = deadline;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(int key) {
+            int i = indexOf(key);
+            return i < 0 ? null : (V) values[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(int key) {
+            int i = indexOf(key);
+            if (i < 0) return null;
+            V value = (V) values[i];
+            deleteAt(i);
+            return value;
+        }
+
+        /**
+         * Backward-shift deletion, so lookups never need tombstones.
+         */
+        private void deleteAt(int i) {
+            int mask = keys.length - 1;
+            int gap = i;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (!used[j]) break;
+                int home = mix(keys[j]) & mask;
+                //Move the entry back into the gap if its home slot is not cyclically within (gap, j]
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    timestamps[gap] = timestamps[j];
+                    deadlines[gap] = deadlines[j];
+                    gap = j;
+                }
+            }
+            used[gap] = false;
+            values[gap] = null;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            long[] oldTimestamps = timestamps;
+            long[] oldDeadlines = deadlines;
+            boolean[] oldUsed = used;
+            allocate(capacity);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) insert(oldKeys[i], oldValues[i], oldTimestamps[i], oldDeadlines[i]);
+            }
+        }
+
+        private void schedule(int key, long deadline) {
+            //Anything already due is picked up on the next tick.
+            long tick = Math.max(tickOf(deadline), currentTick + 1);
+            addToSlot((int) (tick & WHEEL_MASK), key);
+        }
+
+        private void addToSlot(int slot, int key) {
+            int[] bucket = wheel[slot];
+            if (bucket == null) {
+                bucket = wheel[slot] = new int[8];
+            } else if (wheelSizes[slot] == bucket.length) {
+                bucket = wheel[slot] = Arrays.copyOf(bucket, bucket.length * 2);
+            }
+            bucket[wheelSizes[slot]++] = key;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void expire(long now, ExpiryHandler<V> handler) {
+            long targetTick = tickOf(now);
+            //No need to go around the wheel more than once, every slot has been visited by then.
+            long fromTick = Math.max(currentTick + 1, targetTick - WHEEL_MASK);
+            for (long tick = fromTick; tick <= targetTick; tick++) {
+                int slot = (int) (tick & WHEEL_MASK);
+                int[] bucket = wheel[slot];
+                int count = wheelSizes[slot];
+                if (count == 0) continue;
+
+                //Handled entries are compacted out, those due on a later lap of the wheel stay.
+                wheelSizes[slot] = 0;
+                int kept = 0;
+                for (int n = 0; n < count; n++) {
+                    int key = bucket[n];
+                    int i = indexOf(key);
+                    if (i < 0) continue; //Already removed
+                    if (deadlines[i] > now) {
+                        long dueTick = tickOf(deadlines[i]);
+                        if (dueTick == targetTick) {
+                            //Due later in the current tick, try again on the next one.
+                            addToSlot((int) ((targetTick + 1) & WHEEL_MASK), key);
+                        } else if (dueTick > targetTick && (dueTick & WHEEL_MASK) == slot) {
+                            //Due on a later lap of the wheel.
+                            bucket[kept++] = key;
+                        }
+                        //Otherwise it was rescheduled and is already waiting in another slot.
+                        continue;
+                    }
+
+                    long newDeadline = handler.onExpired(key, (V) values[i], timestamps[i], now);
+                    if (newDeadline < 0) {
+                        deleteAt(i);
+                    } else {
+                        deadlines[i] = newDeadline;
+                        long newTick = Math.max(tickOf(newDeadline), targetTick + 1);
+                        if ((newTick & WHEEL_MASK) == slot) {
+                            bucket[kept++] = key;
+                        } else {
+                            addToSlot((int) (newTick & WHEEL_MASK), key);
+                        }
+                    }
+                }
+                wheelSizes[slot] = kept;
+                if (kept == 0 && bucket.length > 64) wheel[slot] = null; //Don't hold on to burst-sized buckets
+            }
+            currentTick = Math.max(currentTick, targetTick);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+import com.coreyd97.BurpExtenderUtilities.Preferences;
+import com.nccgroup.loggerplusplus.exports.ExportController;
+import com.nccgroup.loggerplusplus.filter.FilterExpression;
+import com.nccgroup.loggerplusplus.filter.colorfilter.TableColorRule;
+import com.nccgroup.loggerplusplus.filter.tag.Tag;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+import com.nccgroup.loggerplusplus.logview.logtable.LogTableColumn;
+import com.nccgroup.loggerplusplus.logview.logtable.LogTableColumnModel;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
+import java.util.*;
+
+import static com.nccgroup.loggerplusplus.util.Globals.*;
+
+/**
+ * Works out which of the lazily computed {@link LogEntry} fields something will read, so they can be
+ * computed on the processing threads rather than on first access, e.g. by the table on the EDT.
+ * Fields nothing reads are never computed at all.
+ * <p>
+ * Demand is the union of the visible table columns, enabled color rules, tags, the do-not-log filter
+ * and the fields used by the enabled exporters. It is recomputed whenever any of those change.
+ */
+public class FieldDemandAnalyzer {
+
+    private final Preferences preferences;
+    private final LogTableColumnModel columnModel;
+    private final ExportController exportController;
+    private volatile Set<LogEntryField> demandedFields;
+
+    public FieldDemandAnalyzer(Preferences preferences, LogTableColumnModel columnModel, ExportController exportController) {
+        this.preferences = preferences;
+        this.columnModel = columnModel;
+        this.exportController = exportController;
+        this.demandedFields = Collections.emptySet();
+
+        //Settings cover color rules, tags, the do-not-log filter, column layout and exporter fields.
+        this.preferences.addSettingListener((source, settingName, newValue) -> recompute());
+        this.columnModel.addColumnModelListener(new TableColumnModelListener() {
+            @Override
+            public void columnAdded(TableColumnModelEvent e) {
+                recompute();
+            }
+
+            @Override
+            public void columnRemoved(TableColumnModelEvent e) {
+                recompute();
+            }
+
+            @Override
+            public void columnMoved(TableColumnModelEvent e) {}
+
+            @Override
+            public void columnMarginChanged(ChangeEvent e) {}
+
+            @Override
+            public void columnSelectionChanged(ListSelectionEvent e) {}
+        });
+        this.exportController.addEnabledExportersListener(this::recompute);
+
+        recompute();
+    }
+
+    /**
+     * @return The lazily computed fields which are currently in demand
+     */
+    public Set<LogEntryField> getDemandedFields() {
+        return demandedFields;
+    }
+
+    public void recompute() {
+        EnumSet<LogEntryField> fields = EnumSet.noneOf(LogEntryField.class);
+
+        for (LogTableColumn column : columnModel.getAllColumns()) {
+            if (column.isVisible()) fields.add(column.getIdentifier());
+        }
+
+        HashMap<UUID, TableColorRule> colorFilters = preferences.getSetting(PREF_COLOR_FILTERS);
+        if (colorFilters != null) {
+            for (TableColorRule colorRule : colorFilters.values()) {
+                if (colorRule.isEnabled()) addFilterFields(fields, colorRule.getFilterExpression());
+            }
+        }
+
+        HashMap<UUID, Tag> tags = preferences.getSetting(PREF_TAG_FILTERS);
+        if (tags != null) {
+            for (Tag tag : tags.values()) {
+                if (tag.isEnabled()) addFilterFields(fields, tag.getFilterExpression());
+            }
+        }
+
+        addFilterFields(fields, preferences.getSetting(PREF_DO_NOT_LOG_IF_MATCH));
+        fields.addAll(exportController.getRequiredFields());
+
+        fields.retainAll(LogEntry.LAZY_FIELDS);
+        this.demandedFields = Collections.unmodifiableSet(fields);
+    }
+
+    private static void addFilterFields(Set<LogEntryField> fields, FilterExpression filterExpression) {
+        if (filterExpression != null && filterExpression.getRequiredFields() != null) {
+            fields.addAll(filterExpression.getRequiredFields());
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.nccgroup.loggerplusplus.logview.processor;
 import burp.api.montoya.core.Annotations;
 import burp.api.montoya.core.ToolType;
 import burp.api.montoya.http.handler.*;
-import burp.api.montoya.http.message.responses.HttpResponse;
 import burp.api.montoya.proxy.ProxyHttpRequestResponse;
 import burp.api.montoya.proxy.http.*;
 import com.coreyd97.BurpExtenderUtilities.Preferences;
@@ -12,6 +11,8 @@ import com.nccgroup.loggerplusplus.exports.ExportController;
 import com.nccgroup.loggerplusplus.filter.FilterExpression;
 import com.nccgroup.loggerplusplus.filter.colorfilter.TableColorRule;
 import com.nccgroup.loggerplusplus.filter.tag.Tag;
+import com.nccgroup.loggerplusplus.logentry.BodyCache;
+import com.nccgroup.loggerplusplus.logentry.BodyStore;
 import com.nccgroup.loggerplusplus.logentry.FieldGroup;
 import com.nccgroup.loggerplusplus.logentry.LogEntry;
 import com.nccgroup.loggerplusplus.logentry.Status;
@@ -23,7 +24,7 @@ import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import javax.swing.*;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.*;
@@ -40,9 +41,16 @@ public class LogProcessor {
     private final LogTableController logTableController;
     private final ExportController exportController;
     private final Preferences preferences;
-    private final ConcurrentHashMap<Integer, LogEntry> entriesPendingProcessing;
-    private final ConcurrentHashMap<Integer, Future<LogEntry>> entryProcessingFutures;
-    private final PausableThreadPoolExecutor entryProcessExecutor;
+    private final EntryCorrelationTable<PendingEntry> pendingEntries;
+    @Getter
+    private final FieldDemandAnalyzer fieldDemandAnalyzer;
+    @Getter
+    private final CookieJarSnapshot cookieJarSnapshot;
+    @Getter
+    private final BodyCache bodyCache;
+    @Getter
+    private final BodyStore bodyStore;
+    private final CaptureTaskRunner captureTasks;
     private final PausableThreadPoolExecutor entryImportExecutor;
     private final ScheduledExecutorService cleanupExecutor;
 
@@ -53,6 +61,16 @@ public class LogProcessor {
 
     Logger logger = LogManager.getLogger(this);
 
+    /**
+     * Format a date for display. SimpleDateFormat is not thread safe and entries are processed on several threads,
+     * so use this rather than LOGGER_DATE_FORMAT directly.
+     */
+    public static String formatLoggerDate(Date date) {
+        synchronized (LOGGER_DATE_FORMAT) {
+            return LOGGER_DATE_FORMAT.format(date);
+        }
+    }
+
     /**
      * Capture incoming requests and responses.
      * Logic to allow requests independently and match them to responses once received.
@@ -63,16 +81,50 @@ public class LogProcessor {
         this.exportController = exportController;
         this.preferences = LoggerPlusPlus.instance.getPreferencesController().getPreferences();
 
-        this.entriesPendingProcessing = new ConcurrentHashMap<>();
-        this.entryProcessingFutures = new ConcurrentHashMap<>();
-        this.entryProcessExecutor = new PausableThreadPoolExecutor(0, 2147483647,
-                30L, TimeUnit.SECONDS, new SynchronousQueue<>(), new NamedThreadFactory("LPP-LogManager"));
+        this.pendingEntries = new EntryCorrelationTable<>();
+        this.cookieJarSnapshot = new CookieJarSnapshot(() -> LoggerPlusPlus.montoya.http().cookieJar().cookies());
+        this.bodyCache = new BodyCache(((Integer) preferences.getSetting(PREF_BODY_CACHE_SIZE)) * 1000000L);
+        this.preferences.addSettingListener((source, settingName, newValue) -> {
+            if (PREF_BODY_CACHE_SIZE.equals(settingName)) {
+                bodyCache.setBudget(((Integer) newValue) * 1000000L);
+            }
+        });
+        this.bodyStore = createBodyStore();
+        logTableController.getLogTableModel().addEntriesRemovedListener(this::releaseRemovedEntries);
+        this.fieldDemandAnalyzer = new FieldDemandAnalyzer(preferences, logTableController.getLogTableColumnModel(), exportController);
+
+        //Capture pool sized to the machine. What happens when its queue fills up is controlled by PREF_CAPTURE_OVERLOAD_POLICY.
+        this.captureTasks = new CaptureTaskRunner(Runtime.getRuntime().availableProcessors(),
+                preferences.getSetting(PREF_CAPTURE_QUEUE_SIZE), pendingEntries, new CaptureTaskRunner.EntryHandler() {
+            @Override
+            public LogEntry processEntry(LogEntry logEntry) {
+                return LogProcessor.this.processEntry(logEntry);
+            }
+
+            @Override
+            public void addNewEntry(LogEntry logEntry) {
+                LogProcessor.this.addNewEntry(logEntry, true);
+            }
+
+            @Override
+            public void updateExistingEntry(LogEntry logEntry) {
+                LogProcessor.this.updateExistingEntry(logEntry);
+            }
+
+            @Override
+            public void removeExistingEntry(LogEntry logEntry) {
+                LogProcessor.this.removeExistingEntry(logEntry);
+            }
+        }, () -> preferences.getSetting(PREF_CAPTURE_OVERLOAD_POLICY),
+                () -> 1000 * ((Integer) preferences.getSetting(PREF_RESPONSE_TIMEOUT)).longValue());
         this.entryImportExecutor = new PausableThreadPoolExecutor(0, 10, 60L,
                 TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("LPP-Import"));
 
-        //Create incomplete request cleanup thread so map doesn't get too big.
+        //Create incomplete request cleanup thread so the table doesn't get too big.
+        //Each run only advances the table's timer wheel, so it's cheap to tick frequently.
         this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("LPP-LogManager-Cleanup"));
-        this.cleanupExecutor.scheduleAtFixedRate(new AbandonedRequestCleanupRunnable(),30, 30, TimeUnit.SECONDS);
+        this.cleanupExecutor.scheduleAtFixedRate(new AbandonedRequestCleanupRunnable(),
+                EntryCorrelationTable.TICK_MILLIS, EntryCorrelationTable.TICK_MILLIS, TimeUnit.MILLISECONDS);
 
         //TODO Enable new logging API when support for matching requests and their responses improves...
         this.httpHandler = createHttpHandler();
@@ -93,15 +145,16 @@ public class LogProcessor {
                 //We must also handle proxy messages here, since the HTTP listener operates after the proxy listener
                 final LogEntry logEntry = new LogEntry(requestToBeSent.toolSource().toolType(), requestToBeSent, arrivalTime);
 
-                //Set the entry's identifier to the HTTP request's hashcode.
-                // For non-proxy messages, this doesn't change when we receive the response
-                Integer identifier = System.identityHashCode(requestToBeSent);
-
-                logEntry.setIdentifier(identifier);
-                Annotations annotations = LogProcessorHelper.addIdentifierInComment(identifier, requestToBeSent.annotations());
+                //Set the entry's identifier based on the HTTP request's hashcode.
+                //Hashcodes can collide, so the correlation table may hand back a different, unique, identifier.
                 //Submit a new task to process the entry
-                submitNewEntryProcessingRunnable(logEntry);
+                Integer identifier = captureTasks.submitRequest(logEntry, System.identityHashCode(requestToBeSent));
+                if (identifier == null) {
+                    //Entry was dropped, don't tag the request so its response can't be matched up with another entry.
+                    return RequestToBeSentAction.continueWith(requestToBeSent);
+                }
 
+                Annotations annotations = LogProcessorHelper.addIdentifierInComment(identifier, requestToBeSent.annotations());
                 return RequestToBeSentAction.continueWith(requestToBeSent, annotations);
             }
 
@@ -126,7 +179,7 @@ public class LogProcessor {
                     Object[] identifierAndAnnotation = LogProcessorHelper.extractAndRemoveIdentifierFromRequestResponseComment(responseReceived.annotations());
                     Integer identifier = (Integer) identifierAndAnnotation[0]; //TODO Ew.
                     annotations = (Annotations) identifierAndAnnotation[1];
-                    updateRequestWithResponse(identifier, arrivalTime, responseReceived);
+                    captureTasks.submitResponse(identifier, arrivalTime, responseReceived);
                 }
                 return ResponseReceivedAction.continueWith(responseReceived, annotations);
             }
@@ -152,7 +205,7 @@ public class LogProcessor {
                 Integer identifier = (Integer) identifierAndAnnotation[0]; //TODO Ew.
                 Annotations annotations = (Annotations) identifierAndAnnotation[1];
 
-                updateRequestWithResponse(identifier, arrivalTime, interceptedResponse);
+                captureTasks.submitResponse(identifier, arrivalTime, interceptedResponse);
                 return ProxyResponseToBeSentAction.continueWith(interceptedResponse, annotations);
             }
         };
@@ -219,48 +272,6 @@ public class LogProcessor {
 //        }
 //    }
 
-    /**
-     * When a response comes in, determine if the request has already been processed or not.
-     * If it has not yet been processed, add the response information to the entry and let the original job handle it.
-     * Otherwise, create a new job to process the response.
-     * Unknown UUID's signify the response arrived after the pending request was cleaned up.
-     *
-     * @param entryIdentifier The unique UUID for the log entry.
-     * @param arrivalTime     The arrival time of the response.
-     * @param response The HTTP request response object.
-     */
-    private void updateRequestWithResponse(Integer entryIdentifier, Date arrivalTime, HttpResponse response) {
-        log.debug("Updating entry with response for ID: " + entryIdentifier);
-        if (entriesPendingProcessing.containsKey(entryIdentifier)) {
-            //Not yet started processing the entry, we can add the response so it is processed in the first pass
-            final LogEntry logEntry = entriesPendingProcessing.get(entryIdentifier);
-
-            if (response instanceof InterceptedResponse) {
-                // Raises java.lang.UnsupportedOperationException: Not yet implemented
-//                logEntry.setClientIP(String.valueOf(((InterceptedResponse) response).sourceIpAddress()));
-                logEntry.setListenerInterface(((InterceptedResponse) response).listenerInterface());
-            }
-
-            //Update the response with the new one, and tell it when it arrived.
-            logEntry.addResponse(response, arrivalTime);
-
-            //Do nothing now, there's already a runnable submitted to process it somewhere in the queue.
-            return;
-
-        } else if (entryProcessingFutures.containsKey(entryIdentifier)) {
-            //Already started processing.
-
-            //Get the processing thread
-            Future<LogEntry> processingFuture = entryProcessingFutures.get(entryIdentifier);
-
-            //Submit a job for the processing of its response.
-            //This will block on the request finishing processing, then update the response and process it separately.
-            entryProcessExecutor.submit(createEntryUpdateRunnable(processingFuture, response, arrivalTime));
-        } else {
-            //Unknown Identifier. Potentially for a request which was ignored or cleaned up already?
-        }
-    }
-
     /**
      * Create a runnable to be used in an executor which will process a
      * HTTP object and store the results in the provided LogEntry object.
@@ -269,7 +280,7 @@ public class LogProcessor {
      */
     LogEntry processEntry(final LogEntry logEntry){
         synchronized (logEntry) {
-            logEntry.process();
+            logEntry.process(fieldDemandAnalyzer.getDemandedFields());
 
             //If the status has been changed
             if (logEntry.getStatus() != logEntry.getPreviousStatus()) {
@@ -299,71 +310,6 @@ public class LogProcessor {
         return logEntry;
     }
 
-    private void submitNewEntryProcessingRunnable(final LogEntry logEntry){
-        log.debug("Adding log process request for ID: " + logEntry.getIdentifier());
-        entriesPendingProcessing.put(logEntry.getIdentifier(), logEntry);
-        RunnableFuture<LogEntry> processingRunnable = new FutureTask<>(() -> {
-            entriesPendingProcessing.remove(logEntry.getIdentifier());
-            LogEntry result = processEntry(logEntry);
-
-            if(result == null) {
-                entryProcessingFutures.remove(logEntry.getIdentifier());
-                return null; //Ignored entry. Skip it.
-            }else{
-                addNewEntry(logEntry, true);
-
-                if(result.getStatus() == Status.PROCESSED){
-                    //If the entry was fully processed, remove it from the processing list.
-                    entryProcessingFutures.remove(logEntry.getIdentifier());
-                }else{
-                    //We're waiting on the response, we'll use this future to know we're done later.
-                }
-                return result;
-            }
-        });
-        entryProcessingFutures.put(logEntry.getIdentifier(), processingRunnable);
-        entryProcessExecutor.submit(processingRunnable);
-    }
-
-    private RunnableFuture<LogEntry> createEntryUpdateRunnable(final Future<LogEntry> processingFuture,
-                                                              final HttpResponse requestResponse,
-                                                              final Date arrivalTime){
-        return new FutureTask<>(() -> {
-            //Block until initial processing is complete.
-            LogEntry logEntry = processingFuture.get();
-            if (logEntry == null) {
-                //Request was filtered during response processing. We can just ignore the response.
-                return null;
-            }
-
-            //Request was processed successfully... now process the response.
-            if (requestResponse instanceof InterceptedResponse) {
-                // Raises java.lang.UnsupportedOperationException: Not yet implemented
-//                logEntry.setClientIP(String.valueOf(((InterceptedResponse) requestResponse).sourceIpAddress()));
-                logEntry.setListenerInterface(((InterceptedResponse) requestResponse).listenerInterface());
-            }
-
-            logEntry.addResponse(requestResponse, arrivalTime);
-            LogEntry updatedEntry = processEntry(logEntry);
-
-            if(updatedEntry == null){
-                //Response must have been filtered out. Delete the existing entry and stop processing
-                removeExistingEntry(logEntry);
-                entryProcessingFutures.remove(logEntry.getIdentifier());
-                return null;
-            }
-
-            if (logEntry.getStatus() == Status.PROCESSED) {
-                //If the entry was fully processed, remove it from the processing list.
-                entryProcessingFutures.remove(logEntry.getIdentifier());
-            }
-
-            updateExistingEntry(logEntry);
-
-            return logEntry;
-        });
-    }
-
     public EntryImportWorker.Builder createEntryImportBuilder(){
         return new EntryImportWorker.Builder(this);
     }
@@ -405,29 +351,54 @@ public class LogProcessor {
 
     public void shutdown() {
         this.cleanupExecutor.shutdownNow();
-        this.entryProcessExecutor.shutdownNow();
+        this.captureTasks.shutdown();
         this.entryImportExecutor.shutdownNow();
+        if (this.bodyStore != null) this.bodyStore.close();
+    }
+
+    private BodyStore createBodyStore() {
+        if (!(Boolean) preferences.getSetting(PREF_BODY_STORE_ENABLED)) return null;
+        try {
+            return new BodyStore();
+        } catch (IOException e) {
+            log.error("Could not create the body store, messages will be kept on the heap.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Once an entry is complete and has been exported, move its messages off the heap if the body store is enabled.
+     */
+    private void storeBodies(LogEntry logEntry) {
+        if (bodyStore == null) return;
+        logEntry.storeBodies(bodyStore, bodyCache);
     }
 
+    /**
+     * Release what is held for entries which have left the table.
+     */
+    private void releaseRemovedEntries(List<LogEntry> removedEntries) {
+        for (LogEntry logEntry : removedEntries) {
+            logEntry.invalidateCachedBodies(bodyCache);
+            if (bodyStore != null) logEntry.releaseBodies(bodyStore);
+        }
+    }
+
+    //Table changes are batched onto the EDT by the publisher, exporters are notified from the calling thread.
     void addNewEntry(LogEntry logEntry, boolean sendToAutoExporters) {
-        FilterExpression doNotLogExpression = preferences.getSetting(PREF_DO_NOT_LOG_IF_MATCH);
-        SwingUtilities.invokeLater(() -> {
-            if (sendToAutoExporters) exportController.exportNewEntry(logEntry);
-            logTableController.getLogTableModel().addEntry(logEntry);
-        });
+        if (sendToAutoExporters) exportController.exportNewEntry(logEntry);
+        logTableController.getUpdatePublisher().publishAdd(logEntry);
+        if (logEntry.getStatus() == Status.PROCESSED) storeBodies(logEntry);
     }
 
     void updateExistingEntry(LogEntry logEntry) {
         exportController.exportUpdatedEntry(logEntry);
-        SwingUtilities.invokeLater(() -> {
-            logTableController.getLogTableModel().updateEntry(logEntry);
-        });
+        logTableController.getUpdatePublisher().publishUpdate(logEntry);
+        if (logEntry.getStatus() == Status.PROCESSED) storeBodies(logEntry);
     }
 
     void removeExistingEntry(LogEntry logEntry){
-        SwingUtilities.invokeLater(() -> {
-            logTableController.getLogTableModel().removeLogEntry(logEntry);
-        });
+        logTableController.getUpdatePublisher().publishRemove(logEntry);
     }
 
     PausableThreadPoolExecutor getEntryImportExecutor() {
@@ -435,7 +406,23 @@ public class LogProcessor {
     }
 
     public PausableThreadPoolExecutor getEntryProcessExecutor() {
-        return entryProcessExecutor;
+        return captureTasks.getExecutor();
+    }
+
+    public int getCaptureQueueDepth() {
+        return captureTasks.getQueueDepth();
+    }
+
+    public int getCaptureQueueCapacity() {
+        return captureTasks.getQueueCapacity();
+    }
+
+    public long getDroppedEntryCount() {
+        return captureTasks.getDroppedEntryCount();
+    }
+
+    public long getSkippedResponseCount() {
+        return captureTasks.getSkippedResponseCount();
     }
 
 
@@ -445,43 +432,55 @@ public class LogProcessor {
      *
      *************************/
 
-    private class AbandonedRequestCleanupRunnable implements Runnable {
+    private class AbandonedRequestCleanupRunnable implements Runnable, EntryCorrelationTable.ExpiryHandler<PendingEntry> {
+
+        //Entries timed out by the current sweep. Only touched from the cleanup thread.
+        private final List<LogEntry> timedOut = new ArrayList<>();
 
         @Override
         public void run() {
-            long timeNow = new Date().getTime();
-            synchronized (entryProcessingFutures){
-                try {
-                    Iterator<Map.Entry<Integer, Future<LogEntry>>> iter
-                            = entryProcessingFutures.entrySet().iterator();
-
-                    while (iter.hasNext()) {
-                        Map.Entry<Integer, Future<LogEntry>> abandonedEntry = iter.next();
-                        if(abandonedEntry.getValue().isDone()){
-                            LogEntry logEntry = abandonedEntry.getValue().get();
-                            if (logEntry.getRequestDateTime() == null) {
-                                //Should never be the case.
-                                //Entries should always have request times unless they are imported,
-                                //In which case they will never be awaiting a response so never in this list.
-                                continue;
-                            }
-                            long entryTime = logEntry.getRequestDateTime().getTime();
-                            long responseTimeout = 1000 * ((Integer) preferences.getSetting(PREF_RESPONSE_TIMEOUT)).longValue();
-                            if (timeNow - entryTime > responseTimeout) {
-                                iter.remove();
-                                if (logEntry.getTool() == ToolType.PROXY) {
-                                    //Remove the identifier from the comment.
-                                    //TODO Fix Comment cleanup
-//                                    LogEntry.extractAndRemoveIdentifierFromComment(logEntry);
-                                }
-                                logEntry.setComment(logEntry.getComment() + " Timed Out");
-                            }
-                        }
-                    }
-                }catch (Exception e){
-                    e.printStackTrace();
+            try {
+                pendingEntries.expire(System.currentTimeMillis(), this);
+                //Handled once the sweep is done, so the table's segment locks aren't held during disk writes or publishing.
+                for (LogEntry logEntry : timedOut) {
+                    //Repaint the row with its new comment.
+                    logTableController.getUpdatePublisher().publishUpdate(logEntry);
+                    storeBodies(logEntry);
                 }
+            }catch (Exception e){
+                e.printStackTrace();
+            }finally {
+                timedOut.clear();
+            }
+        }
+
+        @Override
+        public long onExpired(int identifier, PendingEntry pendingEntry, long timestamp, long now) {
+            if (pendingEntry.getState() != PendingEntry.State.AWAITING_RESPONSE) {
+                //Still processing the request or its response, check again shortly.
+                return now + EntryCorrelationTable.TICK_MILLIS;
+            }
+
+            //The timeout may have been changed since the entry was registered.
+            long responseTimeout = 1000 * ((Integer) preferences.getSetting(PREF_RESPONSE_TIMEOUT)).longValue();
+            if (now - timestamp <= responseTimeout) {
+                return timestamp + responseTimeout;
+            }
+
+            if (!pendingEntry.expire()) {
+                //Response turned up at the last moment.
+                return now + EntryCorrelationTable.TICK_MILLIS;
+            }
+
+            LogEntry logEntry = pendingEntry.logEntry;
+            if (logEntry.getTool() == ToolType.PROXY) {
+                //Remove the identifier from the comment.
+                //TODO Fix Comment cleanup
+//                LogEntry.extractAndRemoveIdentifierFromComment(logEntry);
             }
+            logEntry.setComment(logEntry.getComment() + " Timed Out");
+            timedOut.add(logEntry);
+            return -1;
         }
     }
 }
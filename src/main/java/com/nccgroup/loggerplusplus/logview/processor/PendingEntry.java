@@ -0,0 +1,158 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+import burp.api.montoya.http.message.responses.HttpResponse;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An entry awaiting its response, as stored in the correlation table.
+ * <p>
+ * Request and response processing are chained through a small state machine rather than by blocking
+ * on a future. Whichever thread moves the entry into a state that requires more work is responsible
+ * for doing (or scheduling) it, so no worker ever waits on another stage.
+ * <pre>
+ * QUEUED -> PROCESSING -> AWAITING_RESPONSE -> RESPONSE_SUBMITTED -> DONE
+ *                \-> RESPONSE_PENDING (response arrived mid-processing, handled inline by the worker)
+ * </pre>
+ */
+class PendingEntry {
+
+    enum State {
+        /** Request task is queued, a response arriving now is picked up by the first pass. */
+        QUEUED,
+        /** Request task is running. */
+        PROCESSING,
+        /** Response arrived while the request task was running, the request task will process it. */
+        RESPONSE_PENDING,
+        /** Request has been processed and logged, waiting on the response. */
+        AWAITING_RESPONSE,
+        /** A response task has been submitted. */
+        RESPONSE_SUBMITTED,
+        /** Processing is complete, or the entry was filtered. */
+        DONE
+    }
+
+    enum ResponseAction {
+        /** The response will be processed by the request task. */
+        ATTACHED,
+        /** The caller must submit a task to process the response. */
+        SUBMIT,
+        /** The entry is no longer interested in a response. */
+        IGNORED
+    }
+
+    static class PendingResponse {
+        final HttpResponse response;
+        final Date arrivalTime;
+
+        PendingResponse(HttpResponse response, Date arrivalTime) {
+            this.response = response;
+            this.arrivalTime = arrivalTime;
+        }
+    }
+
+    private static final State[] STATES = State.values();
+
+    final LogEntry logEntry;
+    private final AtomicInteger state;
+    private final AtomicReference<PendingResponse> response;
+
+    PendingEntry(LogEntry logEntry) {
+        this.logEntry = logEntry;
+        this.state = new AtomicInteger(State.QUEUED.ordinal());
+        this.response = new AtomicReference<>();
+    }
+
+    State getState() {
+        return STATES[state.get()];
+    }
+
+    private boolean transition(State from, State to) {
+        return state.compareAndSet(from.ordinal(), to.ordinal());
+    }
+
+    /**
+     * Called by the request task before it starts processing.
+     * @return If the task should go ahead
+     */
+    boolean startProcessing() {
+        return transition(State.QUEUED, State.PROCESSING);
+    }
+
+    /**
+     * Called by the request task once the request has been processed and logged.
+     * @return True if the entry should now wait for its response, false if a response arrived during
+     * processing and the caller must process it now.
+     */
+    boolean finishRequest() {
+        if (transition(State.PROCESSING, State.AWAITING_RESPONSE)) return true;
+        transition(State.RESPONSE_PENDING, State.RESPONSE_SUBMITTED);
+        return false;
+    }
+
+    /**
+     * Called by the thread delivering a response.
+     */
+    ResponseAction offerResponse(HttpResponse httpResponse, Date arrivalTime) {
+        //Store the response before reading the state, so a request task which starts concurrently is sure to see it.
+        PendingResponse pendingResponse = new PendingResponse(httpResponse, arrivalTime);
+        response.set(pendingResponse);
+        while (true) {
+            switch (getState()) {
+                case QUEUED:
+                    return ResponseAction.ATTACHED;
+                case PROCESSING:
+                    if (transition(State.PROCESSING, State.RESPONSE_PENDING)) return ResponseAction.ATTACHED;
+                    break;
+                case AWAITING_RESPONSE:
+                    if (transition(State.AWAITING_RESPONSE, State.RESPONSE_SUBMITTED)) return ResponseAction.SUBMIT;
+                    break;
+                case RESPONSE_PENDING:
+                case RESPONSE_SUBMITTED:
+                    //Already has a response on the way, the newest one wins.
+                    return ResponseAction.ATTACHED;
+                default:
+                    response.compareAndSet(pendingResponse, null);
+                    return ResponseAction.IGNORED;
+            }
+        }
+    }
+
+    /**
+     * Take the pending response, if there is one. Each response is only handed out once.
+     */
+    PendingResponse takeResponse() {
+        return response.getAndSet(null);
+    }
+
+    /**
+     * Put the entry back to waiting for a response. Used if a response task could not be submitted,
+     * or if the processed response did not complete the entry, so it can time out normally.
+     * <p>
+     * A response delivered while the task held the entry was attached rather than submitted, so nobody
+     * else will process it. In that case the entry is claimed again for the caller.
+     *
+     * @return True if another response is waiting and the caller must process it.
+     */
+    boolean awaitResponse() {
+        transition(State.RESPONSE_SUBMITTED, State.AWAITING_RESPONSE);
+        //The response is stored before the deliverer reads the state, so if it saw RESPONSE_SUBMITTED we see it here.
+        //If it saw AWAITING_RESPONSE instead, it wins the transition below and submits the response itself.
+        return response.get() != null && transition(State.AWAITING_RESPONSE, State.RESPONSE_SUBMITTED);
+    }
+
+    /**
+     * Give up waiting for the response.
+     * @return False if the entry is not waiting on a response, e.g. one arrived just now.
+     */
+    boolean expire() {
+        return transition(State.AWAITING_RESPONSE, State.DONE);
+    }
+
+    void complete() {
+        state.set(State.DONE.ordinal());
+    }
+}
@@ -99,6 +99,10 @@ public class LoggerPreferenceFactory extends PreferenceFactory {
         prefs.registerSetting(PREF_RESPONSE_TIMEOUT, Integer.class, 60);
         prefs.registerSetting(PREF_MAXIMUM_ENTRIES, Integer.class, 1000000);
         prefs.registerSetting(PREF_SEARCH_THREADS, Integer.class, 5);
+        prefs.registerSetting(PREF_CAPTURE_QUEUE_SIZE, Integer.class, 10000);
+        prefs.registerSetting(PREF_CAPTURE_OVERLOAD_POLICY, CaptureOverloadPolicy.class, CaptureOverloadPolicy.BLOCK);
+        prefs.registerSetting(PREF_BODY_CACHE_SIZE, Integer.class, 64); //Default 64MB
+        prefs.registerSetting(PREF_BODY_STORE_ENABLED, Boolean.class, false);
         prefs.registerSetting(PREF_AUTO_IMPORT_PROXY_HISTORY, Boolean.class, false);
         prefs.registerSetting(PREF_LOG_OTHER_LIVE, Boolean.class, true);
         prefs.registerSetting(PREF_ELASTIC_ADDRESS, String.class, "127.0.0.1");
@@ -27,13 +27,17 @@ import com.nccgroup.loggerplusplus.filter.parser.ParseException;
 import com.nccgroup.loggerplusplus.filter.savedfilter.SavedFilter;
 import com.nccgroup.loggerplusplus.filter.tag.Tag;
 import com.nccgroup.loggerplusplus.imports.LoggerImport;
+import com.nccgroup.loggerplusplus.logentry.BodyCache;
 import com.nccgroup.loggerplusplus.logentry.LogEntryField;
 import com.nccgroup.loggerplusplus.logview.logtable.LogTableColumn;
 import com.nccgroup.loggerplusplus.logview.logtable.LogTableColumnModel;
+import com.nccgroup.loggerplusplus.logview.processor.LogProcessor;
 import com.nccgroup.loggerplusplus.util.MoreHelp;
 import com.nccgroup.loggerplusplus.util.userinterface.renderer.TagRenderer;
 
 import javax.swing.*;
+import javax.swing.event.AncestorEvent;
+import javax.swing.event.AncestorListener;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -82,6 +86,7 @@ public class PreferencesPanel extends JScrollPane {
                 if(thisButton.isSelected()){
                     try {
                         FilterExpression expression = new FilterExpression(doNotLogFilterField.getText());
+                        expression.checkNoRelativeTime();
                         doNotLogFilterField.setText(expression.toString());
                         preferences.setSetting(PREF_DO_NOT_LOG_IF_MATCH, expression);
                         doNotLogFilterField.setEnabled(false);
@@ -248,6 +253,77 @@ public class PreferencesPanel extends JScrollPane {
         exportGroup.add(((ExportPanelProvider) exporters.get(HARExporter.class)).getExportPanel());
         exportGroup.add(((ExportPanelProvider) exporters.get(ElasticExporter.class)).getExportPanel());
 
+        ComponentGroup capturePanel = new ComponentGroup(Orientation.VERTICAL, "Capture");
+        JComboBox<CaptureOverloadPolicy> overloadPolicySelector = new JComboBox<>(CaptureOverloadPolicy.values());
+        overloadPolicySelector.setSelectedItem(preferences.getSetting(PREF_CAPTURE_OVERLOAD_POLICY));
+        overloadPolicySelector.addActionListener(actionEvent -> {
+            preferences.setSetting(PREF_CAPTURE_OVERLOAD_POLICY, overloadPolicySelector.getSelectedItem());
+        });
+        JPanel overloadPolicyPanel = new JPanel(new BorderLayout());
+        overloadPolicyPanel.add(new JLabel("When capture queue is full: "), BorderLayout.WEST);
+        overloadPolicyPanel.add(overloadPolicySelector, BorderLayout.CENTER);
+        capturePanel.add(overloadPolicyPanel);
+
+        JSpinner spnCaptureQueueSize = capturePanel.addPreferenceComponent(preferences, PREF_CAPTURE_QUEUE_SIZE,
+                "Capture Queue Size (applied on reload): ");
+        ((SpinnerNumberModel) spnCaptureQueueSize.getModel()).setMinimum(100);
+        ((SpinnerNumberModel) spnCaptureQueueSize.getModel()).setMaximum(1000000);
+        ((SpinnerNumberModel) spnCaptureQueueSize.getModel()).setStepSize(100);
+
+        JSpinner spnBodyCacheSize = capturePanel.addPreferenceComponent(preferences, PREF_BODY_CACHE_SIZE,
+                "Body Cache Size (MB): ");
+        ((SpinnerNumberModel) spnBodyCacheSize.getModel()).setMinimum(0);
+        ((SpinnerNumberModel) spnBodyCacheSize.getModel()).setMaximum(4096);
+        capturePanel.addPreferenceComponent(preferences, PREF_BODY_STORE_ENABLED,
+                "Keep message bodies in memory-mapped files outside the heap (applied on reload)");
+
+        JLabel captureStatusLabel = new JLabel(" ");
+        capturePanel.add(captureStatusLabel);
+        JLabel bodyCacheStatusLabel = new JLabel(" ");
+        capturePanel.add(bodyCacheStatusLabel);
+        JLabel exportStatusLabel = new JLabel(" ");
+        capturePanel.add(exportStatusLabel);
+        javax.swing.Timer captureStatusTimer = new javax.swing.Timer(1000, actionEvent -> {
+            LogProcessor logProcessor = LoggerPlusPlus.instance.getLogProcessor();
+            if (logProcessor == null) return;
+            captureStatusLabel.setText(String.format("Queued: %d / %d    Dropped: %d    Responses skipped: %d",
+                    logProcessor.getCaptureQueueDepth(), logProcessor.getCaptureQueueCapacity(),
+                    logProcessor.getDroppedEntryCount(), logProcessor.getSkippedResponseCount()));
+            BodyCache bodyCache = logProcessor.getBodyCache();
+            bodyCacheStatusLabel.setText(String.format("Body cache: %.1f / %.1f MB    Hits: %d    Misses: %d    Evictions: %d",
+                    bodyCache.getSize() / 1000000d, bodyCache.getBudget() / 1000000d,
+                    bodyCache.getHitCount(), bodyCache.getMissCount(), bodyCache.getEvictionCount())
+                    + (logProcessor.getBodyStore() != null
+                        ? String.format("    Stored: %.1f MB", logProcessor.getBodyStore().getBytesStored() / 1000000d) : ""));
+            ExportController exportController = LoggerPlusPlus.instance.getExportController();
+            StringBuilder exportStatus = new StringBuilder(String.format("Export queue: %d / %d    Lag: %d ms    Dropped: %d",
+                    exportController.getDispatchQueueSize(), exportController.getDispatchQueueCapacity(),
+                    exportController.getDispatchLag(), exportController.getDroppedExports()));
+            synchronized (exportController.getEnabledExporters()) {
+                for (AutomaticLogExporter exporter : exportController.getEnabledExporters()) {
+                    exportStatus.append(String.format("    %s: %d us/entry", exporter.getClass().getSimpleName(),
+                            exportController.getAverageExportTime(exporter)));
+                }
+            }
+            exportStatusLabel.setText(exportStatus.toString());
+        });
+        captureStatusTimer.setInitialDelay(0);
+        //Only poll while the panel is actually visible.
+        captureStatusLabel.addAncestorListener(new AncestorListener() {
+            @Override
+            public void ancestorAdded(AncestorEvent event) {
+                captureStatusTimer.start();
+            }
+
+            @Override
+            public void ancestorRemoved(AncestorEvent event) {
+                captureStatusTimer.stop();
+            }
+
+            @Override
+            public void ancestorMoved(AncestorEvent event) {}
+        });
+
         ComponentGroup otherPanel = new ComponentGroup(Orientation.VERTICAL, "Other");
         JSpinner spnRespTimeout = otherPanel.addPreferenceComponent(preferences, PREF_RESPONSE_TIMEOUT,
                 "Response Timeout (Seconds): ");
@@ -417,6 +493,7 @@ public class PreferencesPanel extends JScrollPane {
                         new JPanel[] { logFromPanel, logFromPanel, exportGroup, exportGroup, exportGroup, exportGroup },
                         new JPanel[] { savedFilterSharing, savedFilterSharing, colorFilterSharing, colorFilterSharing, tagSharing, tagSharing },
                         new JPanel[] { reflectionsPanel, reflectionsPanel, reflectionsPanel, reflectionsPanel, reflectionsPanel, reflectionsPanel },
+                        new JPanel[] { capturePanel, capturePanel, capturePanel, capturePanel, capturePanel, capturePanel },
                         new JPanel[] { otherPanel, otherPanel, otherPanel, otherPanel, otherPanel, otherPanel },
                         new JPanel[] { resetPanel, resetPanel, resetPanel, resetPanel, resetPanel, resetPanel },
                         new JPanel[] { notesPanel, notesPanel, notesPanel, notesPanel, notesPanel, notesPanel }, })
@@ -18,8 +18,8 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.regex.Pattern;
 
 public class ReflectionController {
 
@@ -62,24 +62,50 @@ public class ReflectionController {
     }
     
     public boolean validReflection(String responseBody, HttpParameter param){
-        if(param.name().isEmpty() || param.value().isEmpty()) return false;
+        return !findReflectedParameters(responseBody, List.of(param)).isEmpty();
+    }
 
-        if(responseBody.contains(param.value())) return true;
+    /**
+     * Find the parameters whose value, or a transformation of it, appears in the response body.
+     * All values are searched for together in a single pass over the body.
+     *
+     * @param responseBody The body to search
+     * @param parameters The parameters to look for. Filtered parameters are skipped.
+     * @return The names of the reflected parameters, in the order given
+     */
+    public List<String> findReflectedParameters(String responseBody, List<? extends HttpParameter> parameters){
+        List<HttpParameter> candidates = new ArrayList<>(parameters.size());
+        for (HttpParameter parameter : parameters) {
+            if(parameter.name().isEmpty() || parameter.value().isEmpty()) continue;
+            if(!isParameterFiltered(parameter)) candidates.add(parameter);
+        }
+        if(candidates.isEmpty()) return new ArrayList<>();
 
+        List<ParameterValueTransformer> enabledTransformers = new ArrayList<>();
         for (ParameterValueTransformer transformer : transformerList) {
-            try {
-                if (transformer.isEnabled()){
-                    Pattern pattern = Pattern.compile("\\Q"+transformer.transform(param.value())+"\\E", Pattern.CASE_INSENSITIVE);
-                    if(pattern.matcher(responseBody).find()){
-                        return true;
-                    }
-                }
+            if(transformer.isEnabled()) enabledTransformers.add(transformer);
+        }
 
-            }catch (Exception e){
-                //Transformation failed. Ignore and continue.
+        ReflectionMatcher matcher = new ReflectionMatcher(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            String value = candidates.get(i).value();
+            //Raw values must match exactly, transformed values ignore case.
+            matcher.addPattern(i, value, true);
+            for (ParameterValueTransformer transformer : enabledTransformers) {
+                try {
+                    matcher.addPattern(i, transformer.transform(value), false);
+                }catch (Exception e){
+                    //Transformation failed. Ignore and continue.
+                }
             }
         }
-        return false;
+
+        BitSet reflected = matcher.findGroups(responseBody);
+        List<String> reflectedNames = new ArrayList<>(reflected.cardinality());
+        for (int i = reflected.nextSetBit(0); i >= 0; i = reflected.nextSetBit(i + 1)) {
+            reflectedNames.add(candidates.get(i).name());
+        }
+        return reflectedNames;
     }
 
     public void showFilterConfigDialog(){
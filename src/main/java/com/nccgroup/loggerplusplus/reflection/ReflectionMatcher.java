@@ -0,0 +1,216 @@
+package com.nccgroup.loggerplusplus.reflection;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Aho-Corasick automaton over a set of literal patterns, each belonging to a group (a parameter).
+ * A single pass over the text finds which groups have at least one pattern present.
+ * <p>
+ * Patterns are matched with US-ASCII case folding, the same as {@link java.util.regex.Pattern#CASE_INSENSITIVE}.
+ * Patterns added as case-sensitive are matched the same way, then verified exactly against the text.
+ */
+public class ReflectionMatcher {
+
+    private static final int ROOT = 0;
+    private static final int DENSE_RANGE = 128;
+
+    private final int groupCount;
+    private String[] patternList = new String[16];
+    private int[] patternGroups = new int[16];
+    private boolean[] patternCaseSensitive = new boolean[16];
+    private int patternCount;
+
+    //Trie, nodes are indexes into these arrays. Root transitions for ASCII are held densely.
+    private final int[] rootTransitions = new int[DENSE_RANGE];
+    private char[][] childLabels = new char[16][];
+    private int[][] childTargets = new int[16][];
+    private int[] childCounts = new int[16];
+    private int[] failLinks = new int[16];
+    private int[] outputLinks = new int[16];
+    private int[][] nodeOutputs = new int[16][];
+    private int nodeCount = 1;
+    private boolean built;
+
+    /**
+     * @param groupCount The number of groups patterns will be added to
+     */
+    public ReflectionMatcher(int groupCount) {
+        this.groupCount = groupCount;
+        Arrays.fill(rootTransitions, -1);
+    }
+
+    /**
+     * @param group The group the pattern belongs to
+     * @param pattern The literal to search for. Empty patterns are ignored.
+     * @param caseSensitive If the pattern must match exactly, rather than ignoring ASCII case
+     */
+    public void addPattern(int group, String pattern, boolean caseSensitive) {
+        if (built) throw new IllegalStateException("Patterns cannot be added after searching.");
+        if (pattern == null || pattern.isEmpty()) return;
+
+        if (patternCount == patternList.length) {
+            patternList = Arrays.copyOf(patternList, patternCount * 2);
+            patternGroups = Arrays.copyOf(patternGroups, patternCount * 2);
+            patternCaseSensitive = Arrays.copyOf(patternCaseSensitive, patternCount * 2);
+        }
+        int id = patternCount++;
+        patternList[id] = pattern;
+        patternGroups[id] = group;
+        patternCaseSensitive[id] = caseSensitive;
+
+        int node = ROOT;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = fold(pattern.charAt(i));
+            int next = child(node, c);
+            if (next < 0) {
+                next = newNode();
+                addChild(node, c, next);
+            }
+            node = next;
+        }
+        int[] outputs = nodeOutputs[node];
+        if (outputs == null) {
+            nodeOutputs[node] = new int[]{id};
+        } else {
+            outputs = Arrays.copyOf(outputs, outputs.length + 1);
+            outputs[outputs.length - 1] = id;
+            nodeOutputs[node] = outputs;
+        }
+    }
+
+    /**
+     * Scan the text once, stopping early if every group has been found.
+     *
+     * @param text The text to search
+     * @return The groups with at least one pattern present in the text
+     */
+    public BitSet findGroups(CharSequence text) {
+        if (!built) build();
+        BitSet found = new BitSet(groupCount);
+        if (patternCount == 0) return found;
+
+        int remaining = countDistinctGroups();
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            int next;
+            while ((next = child(state, c)) < 0 && state != ROOT) {
+                state = failLinks[state];
+            }
+            state = Math.max(next, ROOT);
+
+            for (int node = nodeOutputs[state] != null ? state : outputLinks[state]; node > ROOT; node = outputLinks[node]) {
+                for (int id : nodeOutputs[node]) {
+                    int group = patternGroups[id];
+                    if (found.get(group)) continue;
+                    String pattern = patternList[id];
+                    if (patternCaseSensitive[id]
+                            && !regionEquals(text, i - pattern.length() + 1, pattern)) continue;
+                    found.set(group);
+                    if (--remaining == 0) return found;
+                }
+            }
+        }
+        return found;
+    }
+
+    private int countDistinctGroups() {
+        BitSet groups = new BitSet(groupCount);
+        for (int id = 0; id < patternCount; id++) groups.set(patternGroups[id]);
+        return groups.cardinality();
+    }
+
+    private void build() {
+        built = true;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        forEachChild(ROOT, (label, target) -> {
+            failLinks[target] = ROOT;
+            outputLinks[target] = ROOT;
+            queue.add(target);
+        });
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            forEachChild(node, (label, target) -> {
+                int fail = failLinks[node];
+                int next;
+                while ((next = child(fail, label)) < 0 && fail != ROOT) {
+                    fail = failLinks[fail];
+                }
+                fail = Math.max(next, ROOT);
+                failLinks[target] = fail;
+                outputLinks[target] = nodeOutputs[fail] != null ? fail : outputLinks[fail];
+                queue.add(target);
+            });
+        }
+    }
+
+    private interface ChildConsumer {
+        void accept(char label, int target);
+    }
+
+    private void forEachChild(int node, ChildConsumer consumer) {
+        if (node == ROOT) {
+            for (char c = 0; c < DENSE_RANGE; c++) {
+                if (rootTransitions[c] >= 0) consumer.accept(c, rootTransitions[c]);
+            }
+        }
+        for (int i = 0; i < childCounts[node]; i++) {
+            consumer.accept(childLabels[node][i], childTargets[node][i]);
+        }
+    }
+
+    private int child(int node, char c) {
+        if (node == ROOT && c < DENSE_RANGE) return rootTransitions[c];
+        char[] labels = childLabels[node];
+        for (int i = 0; i < childCounts[node]; i++) {
+            if (labels[i] == c) return childTargets[node][i];
+        }
+        return -1;
+    }
+
+    private void addChild(int node, char c, int target) {
+        if (node == ROOT && c < DENSE_RANGE) {
+            rootTransitions[c] = target;
+            return;
+        }
+        int count = childCounts[node];
+        if (childLabels[node] == null) {
+            childLabels[node] = new char[2];
+            childTargets[node] = new int[2];
+        } else if (count == childLabels[node].length) {
+            childLabels[node] = Arrays.copyOf(childLabels[node], count * 2);
+            childTargets[node] = Arrays.copyOf(childTargets[node], count * 2);
+        }
+        childLabels[node][count] = c;
+        childTargets[node][count] = target;
+        childCounts[node] = count + 1;
+    }
+
+    private int newNode() {
+        if (nodeCount == childCounts.length) {
+            int capacity = nodeCount * 2;
+            childLabels = Arrays.copyOf(childLabels, capacity);
+            childTargets = Arrays.copyOf(childTargets, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+            failLinks = Arrays.copyOf(failLinks, capacity);
+            outputLinks = Arrays.copyOf(outputLinks, capacity);
+            nodeOutputs = Arrays.copyOf(nodeOutputs, capacity);
+        }
+        return nodeCount++;
+    }
+
+    private static boolean regionEquals(CharSequence text, int offset, String pattern) {
+        if (offset < 0) return false;
+        for (int i = 0; i < pattern.length(); i++) {
+            if (text.charAt(offset + i) != pattern.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -77,6 +77,10 @@ public class Globals {
     public static final String PREF_COLUMNS_VERSION = "columnsVersion";
     public static final String PREF_MAX_RESP_SIZE = "maxRespBodySize";
     public static final String PREF_TABLE_PILL_STYLE = "tagsStyle";
+    public static final String PREF_CAPTURE_QUEUE_SIZE = "captureQueueSize";
+    public static final String PREF_CAPTURE_OVERLOAD_POLICY = "captureOverloadPolicy";
+    public static final String PREF_BODY_CACHE_SIZE = "bodyCacheSize";
+    public static final String PREF_BODY_STORE_ENABLED = "bodyStoreEnabled";
 
     // Graylog Exporter Preferences
     public static final String PREF_GRAYLOG_ADDRESS = "graylogAddress";
@@ -98,6 +102,23 @@ public class Globals {
     public enum Protocol {HTTP, HTTPS}
 
     public enum GraylogTransport {HTTP, TCP, UDP}
+
+    public enum CaptureOverloadPolicy {
+        BLOCK("Block until space is available"),
+        DROP("Drop new entries"),
+        REQUEST_ONLY("Skip response processing");
+
+        private final String label;
+
+        CaptureOverloadPolicy(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
     public static final String DEFAULT_COLOR_FILTERS_JSON = "{\"2add8ace-b652-416a-af08-4d78c5d22bc7\":{\"uid\":\"2add8ace-b652-416a-af08-4d78c5d22bc7\"," +
             "\"filter\":{\"filter\":\"Request.Complete == False\"},\"filterString\":\"Request.Complete == False\",\"backgroundColor\":{\"value\":-16777216,\"falpha\":0.0}," +
             "\"foregroundColor\":{\"value\":-65536,\"falpha\":0.0},\"enabled\":true,\"modified\":false,\"shouldRetest\":true,\"priority\":1}}";
@@ -46,6 +46,15 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
         }
     }
 
+    public boolean isPaused() {
+        pauseLock.lock();
+        try {
+            return isPaused;
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
     public void resume() {
         pauseLock.lock();
         try {
@@ -3,11 +3,15 @@
 package com.nccgroup.loggerplusplus.filter.parser;
 
 import com.nccgroup.loggerplusplus.filter.ComparisonOperator;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
 import com.nccgroup.loggerplusplus.logentry.LogEntryField;
 import com.nccgroup.loggerplusplus.logview.processor.LogProcessor;
 import org.apache.commons.text.StringEscapeUtils;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -17,6 +21,15 @@ class ASTComparison extends SimpleNode {
 
   Object left, right;
   ComparisonOperator comparisonOperator;
+  //Dictionary code of a String constant on the right, resolved on first evaluation.
+  private int rightFoldedCode = UNRESOLVED_CODE;
+  private static final int UNRESOLVED_CODE = Integer.MIN_VALUE;
+  //Numeric constant on the right, converted once when the comparison is parsed.
+  private NumericConstant rightNumber;
+  //Date constant on the right, truncated to the second when the comparison is parsed.
+  private long rightEpochSecond;
+  //Case folded items of an IN array, hashed when the comparison is parsed. Null if not an array, or an item has surrogates.
+  private Set<String> rightFoldedItems;
 
   public ASTComparison(int id) {
     super(id);
@@ -46,6 +59,68 @@ class ASTComparison extends SimpleNode {
     return right;
   }
 
+  /**
+   * Convert constants to the forms they are compared in. Called once the comparison has been parsed.
+   */
+  void resolveConstants() {
+    if (right instanceof Number) {
+      rightNumber = new NumericConstant(new BigDecimal(String.valueOf(right)));
+    } else if (right instanceof Date) {
+      rightEpochSecond = toEpochSecond(((Date) right).getTime());
+    } else if (comparisonOperator == ComparisonOperator.IN && right instanceof Collection) {
+      rightFoldedItems = foldItems((Collection<?>) right);
+    }
+  }
+
+  private static Set<String> foldItems(Collection<?> items) {
+    HashSet<String> folded = new HashSet<>();
+    for (Object item : items) {
+      String string = String.valueOf(item);
+      if (CaseInsensitiveSearch.hasSurrogates(string)) return null;
+      folded.add(CaseInsensitiveSearch.fold(string));
+    }
+    return folded;
+  }
+
+  /**
+   * @return The case folded items of the array on the right of an IN comparison,
+   * or null if they must be compared individually
+   */
+  Set<String> getRightFoldedItems() {
+    return rightFoldedItems;
+  }
+
+  /**
+   * @return The date constant on the right of the comparison, in seconds since the epoch
+   */
+  long getRightEpochSecond() {
+    return rightEpochSecond;
+  }
+
+  /**
+   * Dates are compared to the second, the precision they are displayed and entered in.
+   */
+  static long toEpochSecond(long millis) {
+    return Math.floorDiv(millis, 1000L);
+  }
+
+  /**
+   * @return The numeric constant on the right of the comparison, or null if it is not a number
+   */
+  NumericConstant getRightNumber() {
+    return rightNumber;
+  }
+
+  /**
+   * @return The case insensitive dictionary code of the String constant on the right of the comparison
+   */
+  int getRightFoldedCode() {
+    if (rightFoldedCode == UNRESOLVED_CODE) {
+      rightFoldedCode = LogEntry.FIELD_DICTIONARY.getFoldedCode((String) right);
+    }
+    return rightFoldedCode;
+  }
+
   @Override
   public String toString() {
     Class<?> leftClass = left instanceof LogEntryField ? ((LogEntryField) left).getType() : left.getClass();
@@ -74,7 +149,7 @@ class ASTComparison extends SimpleNode {
       sb.append("]");
       return sb.toString();
     }else if(obj instanceof Date){
-      return "\"" + LogProcessor.LOGGER_DATE_FORMAT.format(obj) + "\"";
+      return "\"" + LogProcessor.formatLoggerDate((Date) obj) + "\"";
     }
     return String.valueOf(obj);
   }
@@ -33,6 +33,8 @@ public class AliasCheckVisitor implements FilterParserVisitor{
     VisitorData visitorData = new VisitorData();
     visitorData.setData("dependencies", new HashSet<String>());
     visitorData.setData("contexts", new HashSet<FieldGroup>());
+    visitorData.setData("fields", new HashSet<LogEntryField>());
+    visitorData.setData("relativeTime", false);
     Stack<String> visitStack = new Stack<String>();
     visitorData.setData("aliasVisitList", visitStack);
     if (alias != null) {
@@ -48,9 +50,19 @@ public class AliasCheckVisitor implements FilterParserVisitor{
 
   @Override
   public VisitorData visit(ASTComparison node, VisitorData visitorData){
-    HashSet<FieldGroup> contexts = (HashSet<FieldGroup>) visitorData.getData().get("contexts");
-    if(node.left instanceof LogEntryField) contexts.add(((LogEntryField) node.left).getFieldGroup());
-    if(node.right instanceof LogEntryField) contexts.add(((LogEntryField) node.right).getFieldGroup());
+    HashSet<FieldGroup> contexts = visitorData.getData("contexts");
+    HashSet<LogEntryField> fields = visitorData.getData("fields");
+    if(node.left instanceof LogEntryField) {
+      contexts.add(((LogEntryField) node.left).getFieldGroup());
+      fields.add((LogEntryField) node.left);
+    }
+    if(node.right instanceof LogEntryField) {
+      contexts.add(((LogEntryField) node.right).getFieldGroup());
+      fields.add((LogEntryField) node.right);
+    }
+    if(node.left instanceof RelativeTime || node.right instanceof RelativeTime) {
+      visitorData.setData("relativeTime", true);
+    }
     defaultVisit(node, visitorData);
     return visitorData;
   }
@@ -58,7 +70,7 @@ public class AliasCheckVisitor implements FilterParserVisitor{
   @Override
   public VisitorData visit(ASTAlias node, VisitorData data) {
     //Add this alias to our dependencies
-    Stack<String> aliasVisitList = (Stack<String>) data.getData().get("aliasVisitList");
+    Stack<String> aliasVisitList = data.getData("aliasVisitList");
     try {
       log.debug("Visiting " + node.identifier);
       if (aliasVisitList.contains(node.identifier.toUpperCase())) {
@@ -73,7 +85,7 @@ public class AliasCheckVisitor implements FilterParserVisitor{
       log.debug("Current Visit Queue " + aliasVisitList.toString());
 
 
-      ((HashSet<String>) data.getData().get("dependencies")).add(node.identifier.toUpperCase());
+      data.<HashSet<String>>getData("dependencies").add(node.identifier.toUpperCase());
 
       //Now sanity check on the aliased filter with our existing data
       Optional<SavedFilter> aliasedFilter = filterLibraryController.getFilterSnippets().stream().filter(savedFilter -> savedFilter.getName().equalsIgnoreCase(node.identifier)).findFirst();
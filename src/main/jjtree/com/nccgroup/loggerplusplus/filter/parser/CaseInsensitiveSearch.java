@@ -0,0 +1,185 @@
+package com.nccgroup.loggerplusplus.filter.parser;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Case insensitive search for a constant String, for CONTAINS and equality against String constants.
+ * <p>
+ * Chars match if they are equal once folded by upper then lower casing, as {@link String#equalsIgnoreCase} does.
+ * The constant is folded once, so only the searched text is folded as it is read, and substrings are found
+ * using Boyer-Moore-Horspool, which skips past most of the text rather than testing a match at every position.
+ * Text can be searched as a String, or as raw bytes decoded one char per byte, on the heap or mapped from disk.
+ */
+final class CaseInsensitiveSearch {
+
+  private static final char[] LATIN1_FOLDED = new char[256];
+
+  static {
+    for (int c = 0; c < LATIN1_FOLDED.length; c++) {
+      LATIN1_FOLDED[c] = Character.toLowerCase(Character.toUpperCase((char) c));
+    }
+  }
+
+  private final String needle;
+  private final char[] folded;
+  //Distance to shift when a char, bucketed on its low byte, is under the last char of the needle.
+  private final int[] shifts;
+  //Supplementary chars are folded as code points by the JDK, so leave those to it.
+  private final boolean supplementary;
+
+  CaseInsensitiveSearch(String needle) {
+    this.needle = needle;
+    this.folded = new char[needle.length()];
+    boolean supplementary = false;
+    for (int i = 0; i < folded.length; i++) {
+      char c = needle.charAt(i);
+      supplementary |= Character.isSurrogate(c);
+      folded[i] = fold(c);
+    }
+    this.supplementary = supplementary;
+
+    this.shifts = new int[256];
+    int last = folded.length - 1;
+    Arrays.fill(shifts, folded.length);
+    for (int i = 0; i < last; i++) {
+      shifts[folded[i] & 0xFF] = last - i;
+    }
+  }
+
+  private static char fold(char c) {
+    return c < 256 ? LATIN1_FOLDED[c] : Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  /**
+   * @return The text with each char folded, so Strings without surrogates are equal ignoring case
+   * exactly when their folded forms are equal
+   */
+  static String fold(String text) {
+    char[] folded = new char[text.length()];
+    for (int i = 0; i < folded.length; i++) {
+      folded[i] = fold(text.charAt(i));
+    }
+    return new String(folded);
+  }
+
+  static boolean hasSurrogates(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (Character.isSurrogate(text.charAt(i))) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return If the text contains the needle, ignoring case
+   */
+  boolean isContainedIn(String text) {
+    if (supplementary) return StringUtils.containsIgnoreCase(text, needle);
+    int length = folded.length;
+    if (length == 0) return true;
+    int last = length - 1;
+    char lastChar = folded[last];
+    int end = text.length() - length;
+    int i = 0;
+    while (i <= end) {
+      char c = fold(text.charAt(i + last));
+      if (c == lastChar && regionMatches(text, i, last)) return true;
+      i += shifts[c & 0xFF];
+    }
+    return false;
+  }
+
+  /**
+   * @return If the bytes between the buffer's position and limit, decoded one char per byte, contain the needle,
+   * ignoring case. The buffer is only read with absolute gets, so may be shared.
+   */
+  boolean isContainedIn(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      return isContainedIn(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    if (supplementary) return false;
+    int needleLength = folded.length;
+    if (needleLength == 0) return true;
+    int last = needleLength - 1;
+    char lastChar = folded[last];
+    int end = buffer.limit() - needleLength;
+    int i = buffer.position();
+    while (i <= end) {
+      char c = LATIN1_FOLDED[buffer.get(i + last) & 0xFF];
+      if (c == lastChar && regionMatches(buffer, i, last)) return true;
+      i += shifts[c & 0xFF];
+    }
+    return false;
+  }
+
+  private boolean isContainedIn(byte[] bytes, int offset, int length) {
+    if (supplementary) return false;
+    int needleLength = folded.length;
+    if (needleLength == 0) return true;
+    int last = needleLength - 1;
+    char lastChar = folded[last];
+    int end = offset + length - needleLength;
+    int i = offset;
+    while (i <= end) {
+      char c = LATIN1_FOLDED[bytes[i + last] & 0xFF];
+      if (c == lastChar && regionMatches(bytes, i, last)) return true;
+      i += shifts[c & 0xFF];
+    }
+    return false;
+  }
+
+  /**
+   * @return If the text equals the needle, ignoring case
+   */
+  boolean isEqualTo(String text) {
+    if (text.length() != folded.length) return false;
+    if (supplementary) return text.equalsIgnoreCase(needle);
+    return regionMatches(text, 0, folded.length);
+  }
+
+  /**
+   * @return If any of the items, as Strings, equal the needle, ignoring case
+   */
+  boolean isEqualToAny(Collection<?> items) {
+    for (Object item : items) {
+      if (isEqualTo(String.valueOf(item))) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return If the bytes between the buffer's position and limit, decoded one char per byte, equal the needle,
+   * ignoring case
+   */
+  boolean isEqualTo(ByteBuffer buffer) {
+    if (buffer.remaining() != folded.length || supplementary) return false;
+    return regionMatches(buffer, buffer.position(), folded.length);
+  }
+
+  /**
+   * @return If the first count chars of the needle match the text from the start index
+   */
+  private boolean regionMatches(String text, int start, int count) {
+    for (int j = 0; j < count; j++) {
+      if (fold(text.charAt(start + j)) != folded[j]) return false;
+    }
+    return true;
+  }
+
+  private boolean regionMatches(byte[] bytes, int start, int count) {
+    for (int j = 0; j < count; j++) {
+      if (LATIN1_FOLDED[bytes[start + j] & 0xFF] != folded[j]) return false;
+    }
+    return true;
+  }
+
+  private boolean regionMatches(ByteBuffer buffer, int start, int count) {
+    for (int j = 0; j < count; j++) {
+      if (LATIN1_FOLDED[buffer.get(start + j) & 0xFF] != folded[j]) return false;
+    }
+    return true;
+  }
+}
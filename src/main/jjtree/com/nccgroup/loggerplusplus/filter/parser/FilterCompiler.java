@@ -0,0 +1,526 @@
+package com.nccgroup.loggerplusplus.filter.parser;
+
+import com.nccgroup.loggerplusplus.filter.ComparisonOperator;
+import com.nccgroup.loggerplusplus.filter.LogicalOperator;
+import com.nccgroup.loggerplusplus.filter.savedfilter.SavedFilter;
+import com.nccgroup.loggerplusplus.filterlibrary.FilterLibraryController;
+import com.nccgroup.loggerplusplus.logentry.BodyBytes;
+import com.nccgroup.loggerplusplus.logentry.FieldDictionary;
+import com.nccgroup.loggerplusplus.logentry.FieldValueSource;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+import org.apache.commons.lang3.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a filter's AST into a tree of predicates, so evaluating it against an entry does not walk the AST.
+ * <p>
+ * Work which only depends on the filter is done once when compiling rather than for every entry: aliases are
+ * resolved to the compiled snippet they refer to, constants are converted to the form they are compared in,
+ * and each comparison is specialized on its operator and constant. Each specialization falls back to the
+ * general comparison for values it does not expect, so a compiled filter matches exactly the entries
+ * the general comparison does. The operands of ANDs and ORs are evaluated cheapest and most decisive first,
+ * rather than in the order they were written.
+ * <p>
+ * Relative times, e.g. now-15m, are resolved against the time given when compiling, so every entry tested
+ * in a pass is compared against the same time. To evaluate them at a later time, compile the filter again.
+ */
+public class FilterCompiler {
+
+  private static final Predicate<FieldValueSource> NEVER = entry -> false;
+  //IN lists up to this size are scanned, as folding the value for a set lookup costs more than a few comparisons.
+  private static final int SCANNED_IN_ITEMS = 8;
+
+  //Relative costs of reading fields, for ordering the operands of ANDs and ORs.
+  private static final double FIELD_COST = 1;
+  private static final double LAZY_FIELD_COST = 20;
+  private static final double MESSAGE_FIELD_COST = 100;
+  //Multipliers for comparisons which scan the field's value.
+  private static final double SCAN_COST = 4;
+  private static final double PATTERN_COST = 20;
+
+  //Looks up the filter of the snippet an alias refers to, or null if there isn't one.
+  private final Function<String, ASTExpression> snippets;
+  //The time relative times are resolved against, in milliseconds since the epoch.
+  private final long now;
+  //Aliases being compiled or estimated, to stop recursive snippets recursing forever.
+  private final Set<String> compilingAliases;
+  private final Set<String> estimatingAliases;
+
+  private FilterCompiler(Function<String, ASTExpression> snippets, long now){
+    this.snippets = snippets;
+    this.now = now;
+    this.compilingAliases = new HashSet<>();
+    this.estimatingAliases = new HashSet<>();
+  }
+
+  /**
+   * Compile a filter. Aliases are resolved against the current filter snippets, so the filter must be
+   * compiled again if the snippets change.
+   *
+   * @param now The time to resolve relative times against, in milliseconds since the epoch
+   */
+  public static Predicate<FieldValueSource> compile(ASTExpression expression, FilterLibraryController filterLibraryController, long now){
+    return compile(expression, alias -> findSnippet(filterLibraryController, alias), now);
+  }
+
+  /**
+   * Compile a filter, resolving aliases with the given lookup.
+   */
+  static Predicate<FieldValueSource> compile(ASTExpression expression, Function<String, ASTExpression> snippets, long now){
+    return new FilterCompiler(snippets, now).compileExpression(expression);
+  }
+
+  private Predicate<FieldValueSource> compileExpression(ASTExpression node){
+    @SuppressWarnings("unchecked")
+    Predicate<FieldValueSource>[] operands = (Predicate<FieldValueSource>[]) new Predicate<?>[node.children.length];
+    for (int i = 0; i < operands.length; i++) {
+      operands[i] = compileNode(node.children[i]);
+    }
+
+    Predicate<FieldValueSource> predicate;
+    if(node.op == null || operands.length == 1){
+      predicate = operands[0];
+    }else if(node.op == LogicalOperator.AND || node.op == LogicalOperator.OR){
+      double[] costs = new double[operands.length];
+      for (int i = 0; i < costs.length; i++) {
+        costs[i] = estimateCost(node.children[i]);
+      }
+      predicate = new Junction(node.op == LogicalOperator.AND, operands, costs);
+    }else {
+      //Every operand of an XOR is always evaluated, so their order doesn't matter.
+      predicate = entry -> {
+        boolean result = false;
+        for (Predicate<FieldValueSource> operand : operands) {
+          result ^= operand.test(entry);
+        }
+        return result;
+      };
+    }
+
+    if(node.inverse){
+      Predicate<FieldValueSource> inner = predicate;
+      return entry -> !inner.test(entry);
+    }
+    return predicate;
+  }
+
+  /**
+   * An AND or OR of several operands.
+   * <p>
+   * An operand's result doesn't depend on the order operands are evaluated in, so they are evaluated in the
+   * order which should settle the result for the least work: by their estimated cost, over the chance they
+   * short-circuit the rest. Evaluating an operand may read a lazily computed field or search a body, so the
+   * chances are only learned from the operands the short-circuiting evaluation reaches anyway. A sample of
+   * evaluations counts, for each operand, how often it was evaluated and how often it decided the result.
+   */
+  private static final class Junction implements Predicate<FieldValueSource> {
+    //One in this many evaluations is sampled.
+    private static final int SAMPLE_RATE = 256;
+    //Number of samples between reordering the operands.
+    private static final int REORDER_SAMPLES = 64;
+
+    //AND short-circuits on an operand being false, OR on an operand being true.
+    private final boolean and;
+    private final Predicate<FieldValueSource>[] operands;
+    private final double[] costs;
+    private final int[] evaluated;
+    private final int[] shortCircuits;
+    private int samples;
+    //Indices of the operands, in the order they are evaluated.
+    private volatile int[] order;
+
+    private Junction(boolean and, Predicate<FieldValueSource>[] operands, double[] costs){
+      this.and = and;
+      this.operands = operands;
+      this.costs = costs;
+      this.evaluated = new int[operands.length];
+      this.shortCircuits = new int[operands.length];
+      reorder();
+    }
+
+    @Override
+    public boolean test(FieldValueSource entry){
+      int[] order = this.order;
+      if(ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0) return sample(entry, order);
+      for (int index : order) {
+        if(operands[index].test(entry) != and) return !and;
+      }
+      return and;
+    }
+
+    /**
+     * Evaluate as usual, counting which operands were reached and which short-circuited.
+     */
+    private boolean sample(FieldValueSource entry, int[] order){
+      int reached = 0;
+      boolean shortCircuited = false;
+      while (reached < order.length && !shortCircuited) {
+        shortCircuited = operands[order[reached++]].test(entry) != and;
+      }
+
+      synchronized (this) {
+        for (int i = 0; i < reached; i++) {
+          evaluated[order[i]]++;
+        }
+        if(shortCircuited) shortCircuits[order[reached - 1]]++;
+        if(++samples % REORDER_SAMPLES == 0) reorder();
+      }
+      return shortCircuited != and;
+    }
+
+    private synchronized void reorder(){
+      Integer[] order = new Integer[operands.length];
+      double[] ranks = new double[operands.length];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+        //Of the times the operand was reached. Smoothed, so operands start at even and none are ever certain.
+        double chance = (shortCircuits[i] + 1.0) / (evaluated[i] + 2.0);
+        ranks[i] = costs[i] / chance;
+      }
+      //Stable, so operands which rank the same keep the order they were written in.
+      Arrays.sort(order, Comparator.comparingDouble(i -> ranks[i]));
+      this.order = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  /**
+   * @return A relative estimate of the cost of evaluating the node
+   */
+  private double estimateCost(Node node){
+    if(node instanceof ASTExpression){
+      double cost = 0;
+      for (Node child : ((ASTExpression) node).children) {
+        cost += estimateCost(child);
+      }
+      return cost;
+    }else if(node instanceof ASTComparison){
+      ASTComparison comparison = (ASTComparison) node;
+      double cost = fieldCost(comparison.left) + fieldCost(comparison.right);
+      if(comparison.comparisonOperator == ComparisonOperator.MATCHES || comparison.right instanceof Pattern){
+        cost *= PATTERN_COST;
+      }else if(comparison.comparisonOperator == ComparisonOperator.CONTAINS){
+        cost *= SCAN_COST;
+      }
+      return cost;
+    }else if(node instanceof ASTAlias){
+      ASTExpression snippet = snippets.apply(((ASTAlias) node).identifier);
+      String alias = ((ASTAlias) node).identifier.toUpperCase();
+      if(snippet == null || !estimatingAliases.add(alias)) return 0;
+      try {
+        return estimateCost(snippet);
+      }finally {
+        estimatingAliases.remove(alias);
+      }
+    }
+    return 0;
+  }
+
+  private static double fieldCost(Object operand){
+    if(!(operand instanceof LogEntryField)) return 0;
+    switch ((LogEntryField) operand) {
+      case REQUEST_BODY:
+      case RESPONSE_BODY:
+      case REQUEST_HEADERS:
+      case RESPONSE_HEADERS:
+      case BASE64_REQUEST:
+      case BASE64_RESPONSE:
+        return MESSAGE_FIELD_COST;
+      case INSCOPE:
+        return LAZY_FIELD_COST;
+      default:
+        return LogEntry.LAZY_FIELDS.contains(operand) ? LAZY_FIELD_COST : FIELD_COST;
+    }
+  }
+
+  private Predicate<FieldValueSource> compileNode(Node node){
+    if(node instanceof ASTExpression) return compileExpression((ASTExpression) node);
+    else if(node instanceof ASTComparison) return compileComparison((ASTComparison) node);
+    else if(node instanceof ASTAlias) return compileAlias((ASTAlias) node);
+    else return NEVER;
+  }
+
+  private Predicate<FieldValueSource> compileAlias(ASTAlias node){
+    ASTExpression snippet = snippets.apply(node.identifier);
+    String alias = node.identifier.toUpperCase();
+    if(snippet == null || !compilingAliases.add(alias)) return NEVER;
+    try {
+      return compileExpression(snippet);
+    }finally {
+      compilingAliases.remove(alias);
+    }
+  }
+
+  /**
+   * @return The filter of the snippet the alias refers to, or null if there isn't one
+   */
+  private static ASTExpression findSnippet(FilterLibraryController filterLibraryController, String alias){
+    if (filterLibraryController == null) return null;
+    for (SavedFilter savedFilter : filterLibraryController.getFilterSnippets()) {
+      if (alias.equalsIgnoreCase(savedFilter.getName())) {
+        return savedFilter.getFilterExpression() != null ? savedFilter.getFilterExpression().getAst() : null;
+      }
+    }
+    return null;
+  }
+
+  private Predicate<FieldValueSource> compileComparison(ASTComparison node){
+    ComparisonOperator op = node.comparisonOperator;
+
+    if(op == ComparisonOperator.IN && node.left instanceof String && node.right instanceof LogEntryField){
+      //e.g. "admin" IN Request.Parameters
+      LogEntryField field = (LogEntryField) node.right;
+      CaseInsensitiveSearch search = new CaseInsensitiveSearch((String) node.left);
+      return entry -> {
+        Object right = entry.getValueByKey(field);
+        return right instanceof Collection && search.isEqualToAny((Collection<?>) right);
+      };
+    }
+
+    if(!(node.left instanceof LogEntryField) || node.right instanceof LogEntryField){
+      //Other comparisons between two fields, or with the constant on the left, aren't worth specializing.
+      Object left = resolve(node.left), right = resolve(node.right);
+      return entry -> compare(op, valueOf(entry, left), valueOf(entry, right));
+    }
+
+    LogEntryField field = (LogEntryField) node.left;
+
+    if(isDictionaryComparison(node)){
+      int rightCode = node.getRightFoldedCode();
+      if(rightCode != FieldDictionary.NO_CODE){
+        //Both sides have codes, so compare those rather than the Strings. Entries hold their values' codes.
+        boolean notEqual = op == ComparisonOperator.NOT_EQUAL;
+        Predicate<FieldValueSource> fallback = compileFieldComparison(node);
+        return entry -> {
+          int leftCode = entry.getDictionaryCode(field);
+          if(leftCode != FieldDictionary.NO_CODE) return (leftCode == rightCode) ^ notEqual;
+          return fallback.test(entry);
+        };
+      }
+    }
+
+    return compileFieldComparison(node);
+  }
+
+  private static boolean isDictionaryComparison(ASTComparison node) {
+    return (node.comparisonOperator == ComparisonOperator.EQUAL || node.comparisonOperator == ComparisonOperator.NOT_EQUAL)
+        && node.left instanceof LogEntryField && LogEntry.DICTIONARY_FIELDS.contains(node.left)
+        && node.right instanceof String;
+  }
+
+  /**
+   * Specialize a comparison of a field against a constant, mirroring the order of checks in {@link #compare}.
+   */
+  private Predicate<FieldValueSource> compileFieldComparison(ASTComparison node){
+    ComparisonOperator op = node.comparisonOperator;
+    LogEntryField field = (LogEntryField) node.left;
+    Object constant = resolve(node.right);
+
+    NumericConstant number = node.getRightNumber();
+    if(number != null && isRelational(op)){
+      return entry -> {
+        Object left = entry.getValueByKey(field);
+        if(!(left instanceof Number)) return compare(op, left, constant);
+        try {
+          return test(op, number.compare((Number) left));
+        }catch (NumberFormatException e){
+          return false;
+        }
+      };
+    }
+
+    if(constant instanceof Pattern){
+      Pattern pattern = (Pattern) constant;
+      if(op == ComparisonOperator.MATCHES){
+        return entry -> pattern.matcher(stringValue(entry.getValueByKey(field))).matches();
+      }
+      boolean notEqual = op == ComparisonOperator.NOT_EQUAL;
+      return entry -> pattern.matcher(stringValue(entry.getValueByKey(field))).find() ^ notEqual;
+    }
+
+    if(constant instanceof Date && isRelational(op)){
+      long right = node.right instanceof RelativeTime
+          ? ASTComparison.toEpochSecond(((Date) constant).getTime()) : node.getRightEpochSecond();
+      return entry -> {
+        Object left = entry.getValueByKey(field);
+        if(!(left instanceof Date)) return compare(op, left, constant);
+        return test(op, Long.compare(ASTComparison.toEpochSecond(((Date) left).getTime()), right));
+      };
+    }
+
+    Set<String> foldedItems = node.getRightFoldedItems();
+    if(op == ComparisonOperator.IN && foldedItems != null && foldedItems.size() <= SCANNED_IN_ITEMS){
+      String[] items = ((Collection<?>) constant).stream().map(String::valueOf).toArray(String[]::new);
+      return entry -> {
+        Object left = entry.getValueByKey(field);
+        if(left instanceof Date) return compare(op, left, constant);
+        String value = stringValue(left);
+        for (String item : items) {
+          if(value.equalsIgnoreCase(item)) return true;
+        }
+        return false;
+      };
+    }
+    if(op == ComparisonOperator.IN && foldedItems != null){
+      return entry -> {
+        Object left = entry.getValueByKey(field);
+        if(left instanceof Date) return compare(op, left, constant);
+        return foldedItems.contains(CaseInsensitiveSearch.fold(stringValue(left)));
+      };
+    }
+
+    boolean body = field == LogEntryField.REQUEST_BODY || field == LogEntryField.RESPONSE_BODY;
+
+    if(op == ComparisonOperator.CONTAINS && constant instanceof String){
+      CaseInsensitiveSearch search = new CaseInsensitiveSearch((String) constant);
+      return entry -> {
+        if(body){
+          //Search the raw body rather than decoding it to a String.
+          BodyBytes bodyBytes = entry.getBodyBytes(field);
+          if(bodyBytes != null) return search.isContainedIn(bodyBytes.buffer());
+        }
+        Object left = entry.getValueByKey(field);
+        if(left instanceof Collection) return search.isEqualToAny((Collection<?>) left);
+        if(left instanceof Date) return compare(op, left, constant);
+        return search.isContainedIn(stringValue(left));
+      };
+    }
+
+    if((op == ComparisonOperator.EQUAL || op == ComparisonOperator.NOT_EQUAL) && constant instanceof String){
+      CaseInsensitiveSearch search = new CaseInsensitiveSearch((String) constant);
+      boolean notEqual = op == ComparisonOperator.NOT_EQUAL;
+      return entry -> {
+        if(body){
+          BodyBytes bodyBytes = entry.getBodyBytes(field);
+          if(bodyBytes != null) return search.isEqualTo(bodyBytes.buffer()) ^ notEqual;
+        }
+        Object left = entry.getValueByKey(field);
+        if(left instanceof Date) return compare(op, left, constant);
+        return search.isEqualTo(stringValue(left)) ^ notEqual;
+      };
+    }
+
+    return entry -> compare(op, entry.getValueByKey(field), constant);
+  }
+
+  /**
+   * @return The operand, with a relative time resolved to the date it refers to
+   */
+  private Object resolve(Object operand){
+    return operand instanceof RelativeTime ? new Date(((RelativeTime) operand).getTime(now)) : operand;
+  }
+
+  private static Object valueOf(FieldValueSource entry, Object operand){
+    return operand instanceof LogEntryField ? entry.getValueByKey((LogEntryField) operand) : operand;
+  }
+
+  private static String stringValue(Object value){
+    return value == null ? "" : String.valueOf(value);
+  }
+
+  private static boolean isIntegral(Object value){
+    return value instanceof Integer || value instanceof Short || value instanceof Long || value instanceof Byte;
+  }
+
+  private static boolean isRelational(ComparisonOperator op){
+    switch (op) {
+      case EQUAL:
+      case NOT_EQUAL:
+      case GREATER_THAN:
+      case LESS_THAN:
+      case GREATER_THAN_EQUAL:
+      case LESS_THAN_EQUAL:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return The result of a relational operator, given the result of comparing its operands
+   */
+  private static boolean test(ComparisonOperator op, int comparison){
+    switch (op) {
+      case EQUAL:
+        return comparison == 0;
+      case NOT_EQUAL:
+        return comparison != 0;
+      case GREATER_THAN:
+        return comparison > 0;
+      case LESS_THAN:
+        return comparison < 0;
+      case GREATER_THAN_EQUAL:
+        return comparison >= 0;
+      case LESS_THAN_EQUAL:
+        return comparison <= 0;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * The general comparison, used where a comparison has not been specialized.
+   */
+  static boolean compare(ComparisonOperator op, Object left, Object right) {
+    if (left == null) left = "";
+    if (right == null) right = "";
+    try {
+      if (Number.class.isAssignableFrom(left.getClass()) && Number.class.isAssignableFrom(right.getClass())) {
+        //Numerical Comparison
+        if (isIntegral(left) && isIntegral(right)) {
+          return test(op, Long.compare(((Number) left).longValue(), ((Number) right).longValue()));
+        }
+        BigDecimal leftBigDecimal = new BigDecimal(String.valueOf(left));
+        BigDecimal rightBigDecimal = new BigDecimal(String.valueOf(right));
+        return test(op, leftBigDecimal.compareTo(rightBigDecimal));
+      } else if (op == ComparisonOperator.MATCHES) {
+        Matcher m = ((Pattern) right).matcher(String.valueOf(left));
+        return m.matches();
+      } else if (right instanceof Pattern) {
+        Matcher m = ((Pattern) right).matcher(String.valueOf(left));
+        return m.find() ^ op == ComparisonOperator.NOT_EQUAL;
+      } else if (left instanceof Date) {
+        if (!(right instanceof Date)) return false;
+        long leftSecond = ASTComparison.toEpochSecond(((Date) left).getTime());
+        return test(op, Long.compare(leftSecond, ASTComparison.toEpochSecond(((Date) right).getTime())));
+      } else if (op == ComparisonOperator.IN) {
+        //Request.Host IN ["https://twitter.com", "https://google.com"]
+        String leftString = String.valueOf(left);
+        for (Object item : (Collection<?>) right) {
+          if (leftString.equalsIgnoreCase(String.valueOf(item))) return true;
+        }
+        return false;
+      } else if (op == ComparisonOperator.CONTAINS) {
+        //Request.Parameters CONTAINS "A"
+        Object finalRight = right;
+        if (Collection.class.isAssignableFrom(left.getClass())) {
+          return ((Collection<?>) left).stream().anyMatch(o -> String.valueOf(o).equalsIgnoreCase(String.valueOf(finalRight)));
+        } else {
+          return StringUtils.containsIgnoreCase(String.valueOf(left), String.valueOf(right));
+        }
+      } else if (left instanceof String || right instanceof String) { //String comparison last.
+        return String.valueOf(left).equalsIgnoreCase(String.valueOf(right)) ^ op != ComparisonOperator.EQUAL;
+      } else {
+        switch (op) {
+          case EQUAL:
+            return left.equals(right);
+          case NOT_EQUAL:
+            return !left.equals(right);
+        }
+      }
+
+    }catch (Exception e){
+      e.printStackTrace();
+      return false;
+    }
+
+    return false;
+  }
+}
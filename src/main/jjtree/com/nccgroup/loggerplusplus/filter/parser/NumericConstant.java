@@ -0,0 +1,72 @@
+package com.nccgroup.loggerplusplus.filter.parser;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * A numeric filter constant, converted once so field values can be compared against it as primitives.
+ * <p>
+ * Comparisons give the same result as comparing the BigDecimal of the field value's String form, which is
+ * only used where a primitive comparison could disagree with it.
+ */
+final class NumericConstant {
+
+  //Largest magnitude below which every integer is exactly representable as a double.
+  private static final double MAX_EXACT_DOUBLE = 1L << 53;
+
+  private final BigDecimal value;
+  private final boolean fitsLong;
+  private final boolean integral;
+  private final long floor;
+  private final boolean exactDouble;
+  private final double doubleValue;
+
+  NumericConstant(BigDecimal value) {
+    this.value = value;
+    BigDecimal floorValue = value.setScale(0, RoundingMode.FLOOR);
+    this.integral = floorValue.compareTo(value) == 0;
+    long floor = 0;
+    boolean fitsLong;
+    try {
+      floor = floorValue.longValueExact();
+      fitsLong = true;
+    } catch (ArithmeticException e) {
+      fitsLong = false;
+    }
+    this.fitsLong = fitsLong;
+    this.floor = floor;
+    this.doubleValue = value.doubleValue();
+    //Only small integers, where the String form of an equal double always parses back to the same value.
+    this.exactDouble = integral && Math.abs(doubleValue) <= MAX_EXACT_DOUBLE;
+  }
+
+  BigDecimal getValue() {
+    return value;
+  }
+
+  /**
+   * @return The sign of comparing an integral value against the constant
+   */
+  int compareLong(long left) {
+    if (!fitsLong) return -value.signum();
+    if (integral) return Long.compare(left, floor);
+    //The constant lies strictly between floor and floor + 1.
+    return left <= floor ? -1 : 1;
+  }
+
+  /**
+   * @return The sign of comparing a field value against the constant
+   * @throws NumberFormatException If the value has no numeric String form, e.g. NaN
+   */
+  int compare(Number left) {
+    if (left instanceof Integer || left instanceof Short || left instanceof Long || left instanceof Byte) {
+      return compareLong(left.longValue());
+    }
+    if (exactDouble && left instanceof Double) {
+      double leftDouble = left.doubleValue();
+      if (Double.isNaN(leftDouble) || Double.isInfinite(leftDouble)) throw new NumberFormatException("Not a finite number");
+      return leftDouble == doubleValue ? 0 : leftDouble < doubleValue ? -1 : 1;
+    }
+    return new BigDecimal(String.valueOf(left)).compareTo(value);
+  }
+}
@@ -0,0 +1,52 @@
+package com.nccgroup.loggerplusplus.filter.parser;
+
+/**
+ * A time relative to when a filter is evaluated, e.g. {@code now}, {@code now-15m} or {@code now+1d}.
+ * Units are seconds, minutes, hours, days and weeks.
+ */
+public final class RelativeTime {
+
+  private final String literal;
+  private final long offsetMillis;
+
+  private RelativeTime(String literal, long offsetMillis) {
+    this.literal = literal;
+    this.offsetMillis = offsetMillis;
+  }
+
+  static RelativeTime parse(String literal) throws ParseException {
+    literal = literal.toLowerCase();
+    if (literal.equals("now")) return new RelativeTime(literal, 0);
+
+    long unitMillis;
+    switch (literal.charAt(literal.length() - 1)) {
+      case 's': unitMillis = 1000L; break;
+      case 'm': unitMillis = 60 * 1000L; break;
+      case 'h': unitMillis = 60 * 60 * 1000L; break;
+      case 'd': unitMillis = 24 * 60 * 60 * 1000L; break;
+      case 'w': unitMillis = 7 * 24 * 60 * 60 * 1000L; break;
+      default: throw new ParseException("Invalid relative time \"" + literal + "\". Please use the format now-15m");
+    }
+
+    try {
+      //Skip "now", keeping the sign.
+      long amount = Long.parseLong(literal.substring(3, literal.length() - 1));
+      return new RelativeTime(literal, Math.multiplyExact(amount, unitMillis));
+    } catch (NumberFormatException | ArithmeticException e) {
+      throw new ParseException("Relative time \"" + literal + "\" is out of range.");
+    }
+  }
+
+  /**
+   * @param now The time to resolve against, in milliseconds since the epoch
+   * @return The time in milliseconds since the epoch, relative to now
+   */
+  public long getTime(long now) {
+    return now + offsetMillis;
+  }
+
+  @Override
+  public String toString() {
+    return literal;
+  }
+}
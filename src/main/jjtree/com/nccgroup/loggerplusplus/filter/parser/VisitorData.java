@@ -43,6 +43,14 @@ public class VisitorData {
         return data;
     }
 
+    /**
+     * @return The value stored for the key, as the type it was stored as
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getData(String key){
+        return (T) this.data.get(key);
+    }
+
     public void setData(String key, Object value){
         this.data.put(key, value);
     }
@@ -0,0 +1,129 @@
+package com.nccgroup.loggerplusplus.filter.parser;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaseInsensitiveSearchTest {
+
+    //Chars whose case folding is easy to get wrong: several fold to the same char, some outside Latin-1 fold into it.
+    private static final String LATIN1_CHARS = "aAbBsSkKiIyYµßàÀÿ×÷ ";
+    private static final String OTHER_CHARS = "ſKİıŸΜμẞ";
+    //Supplementary chars which case fold as code points, e.g. DESERET CAPITAL LETTER LONG I and its lower case.
+    private static final String[] SUPPLEMENTARY = {"𐐀", "𐐨"};
+
+    private static final int ROUNDS = 20000;
+
+    private static String randomText(Random random, String chars, int maxLength, boolean supplementary) {
+        StringBuilder text = new StringBuilder();
+        for (int length = random.nextInt(maxLength + 1); text.length() < length; ) {
+            if (supplementary && random.nextInt(8) == 0) {
+                text.append(SUPPLEMENTARY[random.nextInt(SUPPLEMENTARY.length)]);
+            } else {
+                text.append(chars.charAt(random.nextInt(chars.length())));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return The needle, or part of the text with some chars swapped for others which fold the same, so
+     * most needles are found
+     */
+    private static String randomNeedle(Random random, String text, String chars, boolean supplementary) {
+        if (text.isEmpty() || random.nextInt(4) == 0) return randomText(random, chars, 4, supplementary);
+        int start = random.nextInt(text.length());
+        int end = start + random.nextInt(text.length() - start + 1);
+        StringBuilder needle = new StringBuilder(text.substring(start, end));
+        for (int i = 0; i < needle.length(); i++) {
+            if (random.nextBoolean()) continue;
+            char c = needle.charAt(i);
+            needle.setCharAt(i, random.nextBoolean() ? Character.toUpperCase(c) : Character.toLowerCase(c));
+        }
+        return needle.toString();
+    }
+
+    private static ByteBuffer heapBuffer(Random random, byte[] bytes) {
+        //Surrounded by other bytes, so the search must keep to the buffer's position and limit.
+        byte[] padded = new byte[bytes.length + 6];
+        random.nextBytes(padded);
+        System.arraycopy(bytes, 0, padded, 3, bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded, 3, bytes.length);
+        return random.nextBoolean() ? buffer : buffer.slice();
+    }
+
+    private static ByteBuffer directBuffer(Random random, byte[] bytes) {
+        byte[] padding = new byte[3];
+        random.nextBytes(padding);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 6);
+        buffer.put(padding).put(bytes).put(padding);
+        buffer.position(3).limit(3 + bytes.length);
+        assertFalse(buffer.hasArray());
+        return buffer;
+    }
+
+    @Test
+    void searchesStringsLikeStringUtils() {
+        Random random = new Random(1);
+        String chars = LATIN1_CHARS + OTHER_CHARS;
+        for (int i = 0; i < ROUNDS; i++) {
+            boolean supplementary = random.nextInt(4) == 0;
+            String text = randomText(random, chars, 24, supplementary);
+            String needle = randomNeedle(random, text, chars, supplementary);
+            CaseInsensitiveSearch search = new CaseInsensitiveSearch(needle);
+
+            assertEquals(StringUtils.containsIgnoreCase(text, needle), search.isContainedIn(text),
+                    () -> "\"" + needle + "\" in \"" + text + "\"");
+            assertEquals(text.equalsIgnoreCase(needle), search.isEqualTo(text),
+                    () -> "\"" + needle + "\" equals \"" + text + "\"");
+            String other = randomText(random, chars, 4, supplementary);
+            assertEquals(text.equalsIgnoreCase(needle) || other.equalsIgnoreCase(needle), search.isEqualToAny(List.of(other, text)),
+                    () -> "\"" + needle + "\" in [\"" + other + "\", \"" + text + "\"]");
+        }
+    }
+
+    @Test
+    void searchesBytesLikeDecodedStrings() {
+        Random random = new Random(2);
+        for (int i = 0; i < ROUNDS; i++) {
+            //Bytes only decode to Latin-1, but the needle can have any char, including ones which fold into Latin-1.
+            String text = randomText(random, LATIN1_CHARS, 24, false);
+            boolean supplementary = random.nextInt(8) == 0;
+            String needle = randomNeedle(random, text, LATIN1_CHARS + OTHER_CHARS, supplementary);
+            byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+            CaseInsensitiveSearch search = new CaseInsensitiveSearch(needle);
+            boolean contained = StringUtils.containsIgnoreCase(text, needle);
+            boolean equal = text.equalsIgnoreCase(needle);
+
+            ByteBuffer heap = heapBuffer(random, bytes);
+            assertEquals(contained, search.isContainedIn(heap), () -> "\"" + needle + "\" in heap \"" + text + "\"");
+            assertEquals(equal, search.isEqualTo(heap), () -> "\"" + needle + "\" equals heap \"" + text + "\"");
+
+            ByteBuffer direct = directBuffer(random, bytes);
+            assertEquals(contained, search.isContainedIn(direct), () -> "\"" + needle + "\" in direct \"" + text + "\"");
+            assertEquals(equal, search.isEqualTo(direct), () -> "\"" + needle + "\" equals direct \"" + text + "\"");
+            assertEquals(3, direct.position());
+        }
+    }
+
+    @Test
+    void supplementaryNeedlesFallBackToTheJdk() {
+        //Only equal ignoring case when folded as code points rather than chars.
+        String upper = SUPPLEMENTARY[0] + "A";
+        String lower = SUPPLEMENTARY[1] + "a";
+        assertTrue(lower.equalsIgnoreCase(upper));
+
+        CaseInsensitiveSearch search = new CaseInsensitiveSearch(upper);
+        assertTrue(search.isEqualTo(lower));
+        assertTrue(search.isContainedIn("x" + lower + "y"));
+        assertFalse(search.isContainedIn(lower.substring(1)));
+        //Bytes decode to Latin-1, which has no surrogates.
+        assertFalse(search.isContainedIn(ByteBuffer.wrap("xAy".getBytes(StandardCharsets.ISO_8859_1))));
+    }
+}
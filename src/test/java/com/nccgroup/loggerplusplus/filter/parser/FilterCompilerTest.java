@@ -0,0 +1,182 @@
+package com.nccgroup.loggerplusplus.filter.parser;
+
+import com.nccgroup.loggerplusplus.logentry.FieldDictionary;
+import com.nccgroup.loggerplusplus.logentry.FieldValueSource;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterCompilerTest {
+
+    private static final class CountingEntry implements FieldValueSource {
+        private final Map<LogEntryField, Object> fields = new EnumMap<>(LogEntryField.class);
+        private final Map<LogEntryField, Integer> reads = new EnumMap<>(LogEntryField.class);
+
+        @Override
+        public Object getValueByKey(LogEntryField field) {
+            reads.merge(field, 1, Integer::sum);
+            return fields.get(field);
+        }
+
+        private final Map<LogEntryField, Integer> dictionaryCodes = new EnumMap<>(LogEntryField.class);
+
+        //Dictionary fields are encoded as processing does, holding their code as entries do.
+        private void putEncoded(LogEntryField field, String value) {
+            String encoded = LogEntry.FIELD_DICTIONARY.encode(value);
+            fields.put(field, encoded);
+            dictionaryCodes.put(field, LogEntry.FIELD_DICTIONARY.codeOf(encoded));
+        }
+
+        @Override
+        public int getDictionaryCode(LogEntryField field) {
+            return dictionaryCodes.getOrDefault(field, FieldDictionary.NO_CODE);
+        }
+
+        private int readsOf(LogEntryField field) {
+            return reads.getOrDefault(field, 0);
+        }
+    }
+
+    private static final String[] METHODS = {"GET", "POST", "get", "PUT", null};
+    private static final String[] PATHS = {"/api/x", "/API/y.js", "/static/a.js", "/x", null, ""};
+    private static final String[] BODIES = {"", "<html>Password: x</html>", "PASSWORD", "password", "passwor", "\u00ffpassword", "\u00ff", "\u0178"};
+    private static final String[] PARAMETERS = {"id", "ID", "token", "\u017fession", "x"};
+
+    private static final Map<String, String> SNIPPETS = Map.of(
+            "SECURE", "Request.IsSSL && Request.Method == \"GET\"",
+            "ERRORS", "Response.Status >= 400 || Request.Path == \"\"");
+
+    //Long enough to be looked up in a hash set rather than scanned.
+    private static final String HOST_LIST = IntStream.range(0, 40)
+            .mapToObj(i -> "\"https://HOST" + (i * 2) + ".example.com\"").collect(Collectors.joining(", ", "[", "]"));
+
+    private static final String[] DIFFERENTIAL_FILTERS = {
+            //Numeric
+            "Response.Status > 200", "Response.Status <= 302", "Response.Status == 200.0", "Response.Status > 200.5",
+            "Response.Status != 500", "Response.Status > Request.Length", "Response.RTT >= -3", "Response.RTT < 5",
+            "Response.RTT == 4", "Response.RTT != 2.25", "Request.Length <= 99999999999999999999",
+            "Request.Length > -99999999999999999999.5",
+            //Dates
+            "Request.Time > \"2020/01/01 00:00:00\"", "Request.Time == \"2020/01/01 00:00:00\"",
+            "Request.Time < \"2020/01/01 00:00:00\"", "Request.Time >= \"1960/06/01 12:00:00\"",
+            "Request.Time != \"2020/01/01 00:00:01\"", "Request.Time > 5",
+            //String equality, including dictionary fields
+            "Request.Method == \"GET\"", "Request.Method != \"post\"", "Request.Method == \"\"",
+            "Request.Hostname == \"WWW.example.com\"", "Response.Body == \"Password\"", "Response.Body != \"\u00ff\"",
+            //IN
+            "Request.Method IN [\"GET\", \"post\"]", "Response.Status IN [200, 404]", "Request.Path IN [\"/api/x\", \"/X\", \"\"]",
+            "Request.Host IN " + HOST_LIST, "\"Token\" IN Request.Parameters", "\"Token\" IN Request.Method",
+            //CONTAINS and MATCHES
+            "Request.Path CONTAINS \"api\"", "Request.Hostname CONTAINS \"EXAMPLE\"", "Request.Length CONTAINS 1",
+            "Response.Body CONTAINS \"password\"", "Response.Body CONTAINS \"\u00ff\"", "Response.Body CONTAINS \"\"",
+            "Request.Parameters CONTAINS \"id\"", "Request.Parameters CONTAINS \"session\"",
+            "Request.Path MATCHES \"/api/.*\"", "Request.Path == /API/", "Request.Path != /api/",
+            //Aliases
+            "#secure", "!(#errors)", "#secure && Response.Status == 200", "#errors || #secure || Request.Path CONTAINS \"x\"",
+            "#missing || Request.IsSSL",
+            //AND, OR and XOR
+            "Request.IsSSL", "!(Request.IsSSL)",
+            "Request.Method == \"GET\" && Response.Status > 200",
+            "Request.Method == \"GET\" || Request.Path CONTAINS \"x\" || Response.Status < 300",
+            "!(Request.Method == \"GET\" ^ Response.Status == 200 ^ Request.IsSSL)",
+            "Response.Status != 500 && Request.Path MATCHES /.*\\.js/ && !(Request.HasParams)",
+            "(Request.IsSSL || Response.Body CONTAINS \"password\") && !(Request.Method IN [\"GET\", \"PUT\"] ^ Request.HasParams)",
+    };
+
+    private static CountingEntry randomEntry(Random random) {
+        CountingEntry entry = new CountingEntry();
+        entry.putEncoded(LogEntryField.METHOD, METHODS[random.nextInt(METHODS.length)]);
+        entry.putEncoded(LogEntryField.HOSTNAME, random.nextBoolean() ? "www.example.com" : "other.org");
+        entry.putEncoded(LogEntryField.HOST, "https://host" + random.nextInt(100) + ".Example.com");
+        entry.fields.put(LogEntryField.PATH, PATHS[random.nextInt(PATHS.length)]);
+        entry.fields.put(LogEntryField.STATUS, random.nextInt(5) == 0 ? null : (short) new int[]{200, 302, 404, 500}[random.nextInt(4)]);
+        entry.fields.put(LogEntryField.REQUEST_LENGTH, random.nextInt(600));
+        entry.fields.put(LogEntryField.RTT, random.nextInt(3) == 0 ? (Object) (random.nextInt(20) / 4.0 - 3)
+                : random.nextInt(4) == 0 ? (Object) Double.NaN : (Object) (long) random.nextInt(10));
+        entry.fields.put(LogEntryField.ISSSL, random.nextBoolean());
+        entry.fields.put(LogEntryField.HASPARAMS, random.nextBoolean());
+        entry.fields.put(LogEntryField.REQUEST_TIME, random.nextInt(4) == 0 ? null : random.nextInt(3) == 0
+                ? new Date(random.nextLong() % 4000000000000L) : new Date(1577836800000L + random.nextInt(5) * 300L - 700));
+        entry.fields.put(LogEntryField.RESPONSE_BODY, BODIES[random.nextInt(BODIES.length)]);
+        List<String> parameters = new ArrayList<>();
+        for (int i = random.nextInt(4); i > 0; i--) parameters.add(PARAMETERS[random.nextInt(PARAMETERS.length)]);
+        entry.fields.put(LogEntryField.PARAMETERS, random.nextInt(10) == 0 ? null : parameters);
+        return entry;
+    }
+
+    @Test
+    void matchesLegacyVisitor() throws ParseException {
+        Map<String, ASTExpression> snippets = new HashMap<>();
+        for (Map.Entry<String, String> snippet : SNIPPETS.entrySet()) {
+            snippets.put(snippet.getKey(), FilterParser.parseFilter(snippet.getValue()));
+        }
+        Function<String, ASTExpression> lookup = alias -> snippets.get(alias.toUpperCase(Locale.ROOT));
+        LegacyFilterEvaluationVisitor visitor = new LegacyFilterEvaluationVisitor(lookup);
+
+        Random random = new Random(1);
+        List<CountingEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) entries.add(randomEntry(random));
+
+        for (String filterString : DIFFERENTIAL_FILTERS) {
+            ASTExpression ast = FilterParser.parseFilter(filterString);
+            Predicate<FieldValueSource> compiled = FilterCompiler.compile(ast, lookup, System.currentTimeMillis());
+            for (CountingEntry entry : entries) {
+                assertEquals(visitor.visit(ast, entry), compiled.test(entry), () -> filterString + " against " + entry.fields);
+            }
+        }
+    }
+
+    @Test
+    void resolvesRelativeTimesWhenCompiled() throws ParseException {
+        ASTExpression ast = FilterParser.parseFilter("Request.Time > now-15m && Request.Time < now+1h");
+        long now = 1577836800000L;
+        CountingEntry entry = new CountingEntry();
+        entry.fields.put(LogEntryField.REQUEST_TIME, new Date(now - 10 * 60 * 1000L));
+
+        assertTrue(FilterCompiler.compile(ast, alias -> null, now).test(entry));
+        //Ten minutes later the entry is older than the window, but only once compiled against the later time.
+        assertFalse(FilterCompiler.compile(ast, alias -> null, now + 10 * 60 * 1000L).test(entry));
+        assertFalse(FilterCompiler.compile(ast, alias -> null, now - 2 * 60 * 60 * 1000L).test(entry));
+    }
+
+    @Test
+    void onlyEvaluatesOperandsShortCircuitingReaches() throws ParseException {
+        //The cheap operand never matches, so the body is never needed, even while learning the operands' order.
+        Predicate<FieldValueSource> filter = FilterCompiler.compile(
+                FilterParser.parseFilter("Response.Body CONTAINS \"secret\" AND Request.Method == \"DELETE\""), alias -> null, System.currentTimeMillis());
+        CountingEntry entry = new CountingEntry();
+        entry.fields.put(LogEntryField.METHOD, "GET");
+        entry.fields.put(LogEntryField.RESPONSE_BODY, "a secret");
+
+        for (int i = 0; i < 100_000; i++) {
+            assertFalse(filter.test(entry));
+        }
+        assertEquals(100_000, entry.readsOf(LogEntryField.METHOD));
+        assertEquals(0, entry.readsOf(LogEntryField.RESPONSE_BODY));
+    }
+
+    @Test
+    void learnsWhichOperandShortCircuits() throws ParseException {
+        //Equal cost, so only the learned chance of short-circuiting can move the second operand first.
+        Predicate<FieldValueSource> filter = FilterCompiler.compile(
+                FilterParser.parseFilter("Request.Method == \"GET\" AND Response.Status == 500"), alias -> null, System.currentTimeMillis());
+        CountingEntry entry = new CountingEntry();
+        entry.fields.put(LogEntryField.METHOD, "GET");
+        entry.fields.put(LogEntryField.STATUS, (short) 200);
+
+        for (int i = 0; i < 200_000; i++) {
+            assertFalse(filter.test(entry));
+        }
+        //The status decides every evaluation, so once learned the method is rarely read.
+        assertEquals(200_000, entry.readsOf(LogEntryField.STATUS));
+        assertTrue(entry.readsOf(LogEntryField.METHOD) < 100_000, "Method read " + entry.readsOf(LogEntryField.METHOD) + " times");
+    }
+}
@@ -2,8 +2,8 @@ package com.nccgroup.loggerplusplus.filter.parser;
 
 import com.nccgroup.loggerplusplus.filter.ComparisonOperator;
 import com.nccgroup.loggerplusplus.filter.LogicalOperator;
-import com.nccgroup.loggerplusplus.filter.savedfilter.SavedFilter;
-import com.nccgroup.loggerplusplus.filterlibrary.FilterLibraryController;
+import com.nccgroup.loggerplusplus.logentry.FieldDictionary;
+import com.nccgroup.loggerplusplus.logentry.FieldValueSource;
 import com.nccgroup.loggerplusplus.logentry.LogEntry;
 import com.nccgroup.loggerplusplus.logentry.LogEntryField;
 import org.apache.commons.lang3.StringUtils;
@@ -13,31 +13,35 @@ import java.math.BigDecimal;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class FilterEvaluationVisitor implements FilterParserVisitor {
+/**
+ * The tree walking evaluation filters used before {@link FilterCompiler}, kept as the reference
+ * {@link FilterCompilerTest} checks compiled filters against, and the baseline for FilterEvaluationBenchmark.
+ * Each evaluation walks the AST, boxing the result of every node, and compares values by their runtime types.
+ */
+class LegacyFilterEvaluationVisitor implements FilterParserVisitor {
 
   private static final String LOG_ENTRY = "logEntry";
-  private final FilterLibraryController filterLibraryController;
+  private final Function<String, ASTExpression> snippets;
 
-  public FilterEvaluationVisitor(FilterLibraryController filterLibraryController){
-    this.filterLibraryController = filterLibraryController;
+  LegacyFilterEvaluationVisitor(Function<String, ASTExpression> snippets){
+    this.snippets = snippets;
   }
 
   public Boolean visit(SimpleNode node, VisitorData data){
     return false;
   }
 
-  public Boolean visit(ASTExpression node, LogEntry logEntry){
+  public Boolean visit(ASTExpression node, FieldValueSource entry){
     VisitorData visitorData = new VisitorData();
-    visitorData.setData(LOG_ENTRY, logEntry);
+    visitorData.setData(LOG_ENTRY, entry);
     return visit(node, visitorData);
   }
 
   public Boolean visit(ASTExpression node, VisitorData visitorData){
-//    System.out.println("Evaluating Node: " + node);
-
     Node firstNode = node.children[0];
     boolean result = evaluateNode(firstNode, visitorData);
 
@@ -79,21 +83,32 @@ public class FilterEvaluationVisitor implements FilterParserVisitor {
     left = node.left instanceof LogEntryField ? getValueForField(visitorData, (LogEntryField) node.left) : node.left;
     right = node.right instanceof LogEntryField ? getValueForField(visitorData, (LogEntryField) node.right) : node.right;
 
+    if (isDictionaryComparison(node) && left instanceof String) {
+      //Both sides have codes, so compare those rather than the Strings.
+      int leftCode = LogEntry.FIELD_DICTIONARY.codeOf((String) left);
+      int rightCode = node.getRightFoldedCode();
+      if (leftCode != FieldDictionary.NO_CODE && rightCode != FieldDictionary.NO_CODE) {
+        return (leftCode == rightCode) ^ node.comparisonOperator == ComparisonOperator.NOT_EQUAL;
+      }
+    }
+
     return compare(node.comparisonOperator, left, right);
   }
 
+  private static boolean isDictionaryComparison(ASTComparison node) {
+    return (node.comparisonOperator == ComparisonOperator.EQUAL || node.comparisonOperator == ComparisonOperator.NOT_EQUAL)
+        && node.left instanceof LogEntryField && LogEntry.DICTIONARY_FIELDS.contains(node.left)
+        && node.right instanceof String;
+  }
+
   private Object getValueForField(VisitorData visitorData, LogEntryField field){
-    return ((LogEntry) visitorData.getData().get(LOG_ENTRY)).getValueByKey(field);
+    return visitorData.<FieldValueSource>getData(LOG_ENTRY).getValueByKey(field);
   }
 
   @Override
   public Boolean visit(ASTAlias node, VisitorData data) {
-    for (SavedFilter savedFilter : filterLibraryController.getFilterSnippets()) {
-      if(node.identifier.equalsIgnoreCase(savedFilter.getName())){
-        return visit(savedFilter.getFilterExpression().getAst(), data);
-      }
-    }
-     return false;
+    ASTExpression snippet = snippets.apply(node.identifier);
+    return snippet != null && visit(snippet, data);
   }
 
   private boolean evaluateNode(Node node, VisitorData visitorData){
@@ -157,7 +172,7 @@ public class FilterEvaluationVisitor implements FilterParserVisitor {
       } else if (op == ComparisonOperator.IN) {
         //Request.Host IN ["https://twitter.com", "https://google.com"]
         String leftString = String.valueOf(left);
-        for (Object item : (Collection) right) {
+        for (Object item : (Collection<?>) right) {
           if (leftString.equalsIgnoreCase(String.valueOf(item))) return true;
         }
         return false;
@@ -165,7 +180,7 @@ public class FilterEvaluationVisitor implements FilterParserVisitor {
         //Request.Parameters CONTAINS "A"
         Object finalRight = right;
         if (Collection.class.isAssignableFrom(left.getClass())) {
-          return ((Collection) left).stream().anyMatch(o -> String.valueOf(o).equalsIgnoreCase(String.valueOf(finalRight)));
+          return ((Collection<?>) left).stream().anyMatch(o -> String.valueOf(o).equalsIgnoreCase(String.valueOf(finalRight)));
         } else {
           return StringUtils.containsIgnoreCase(String.valueOf(left), String.valueOf(right));
         }
@@ -0,0 +1,111 @@
+package com.nccgroup.loggerplusplus.logentry;
+
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.message.MimeType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarEntryStoreTest {
+
+    private static LogEntry entry(int i) {
+        LogEntry entry = new LogEntry(ToolType.PROXY, null);
+        entry.setHostname("host" + (i % 3) + ".example.com");
+        entry.setMethod(i % 2 == 0 ? "GET" : "POST");
+        entry.setResponseStatus((short) (200 + i));
+        entry.setTargetPort((short) 443);
+        entry.setResponseBodyLength(i * 10);
+        entry.setResponseInferredMimeType(MimeType.HTML);
+        entry.setRequestDateTime(new Date(1000L + i));
+        return entry;
+    }
+
+    private static void assertValues(LogEntry entry, int i) {
+        assertEquals(ToolType.PROXY, entry.getTool());
+        assertEquals("host" + (i % 3) + ".example.com", entry.getHostname());
+        assertEquals(i % 2 == 0 ? "GET" : "POST", entry.getMethod());
+        assertEquals((short) (200 + i), entry.getResponseStatus());
+        assertEquals(443, entry.getTargetPort());
+        assertEquals(i * 10, entry.getResponseBodyLength());
+        assertEquals(MimeType.HTML, entry.getResponseInferredMimeType());
+        assertNull(entry.getResponseMimeType());
+        assertEquals(new Date(1000L + i), entry.getRequestDateTime());
+    }
+
+    @Test
+    void keepsValuesAcrossAttachAndDetach() {
+        ColumnarEntryStore store = new ColumnarEntryStore();
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) entries.add(entry(i));
+
+        store.attach(entries);
+        assertEquals(10, store.size());
+        for (int i = 0; i < 10; i++) assertValues(entries.get(i), i);
+
+        //Written while in the store, read back once out of it.
+        entries.get(4).setResponseDateTime(null);
+        entries.get(4).setUrlExtension("js");
+
+        store.detach(entries);
+        assertEquals(0, store.size());
+        for (int i = 0; i < 10; i++) assertValues(entries.get(i), i);
+        assertNull(entries.get(4).getResponseDateTime());
+        assertEquals("js", entries.get(4).getUrlExtension());
+        assertEquals("", entries.get(5).getUrlExtension());
+    }
+
+    @Test
+    void detachedEntryKeepsValuesOnceSlotIsReused() {
+        ColumnarEntryStore store = new ColumnarEntryStore();
+        LogEntry kept = entry(0);
+        LogEntry removed = entry(1);
+        store.attach(List.of(kept, removed));
+
+        store.detach(List.of(removed));
+        LogEntry added = entry(2);
+        store.attach(List.of(added));
+
+        assertValues(kept, 0);
+        assertValues(removed, 1);
+        assertValues(added, 2);
+    }
+
+    @Test
+    void releasesStringsNoLongerReferenced() {
+        ColumnarEntryStore store = new ColumnarEntryStore();
+        LogEntry first = entry(0);
+        store.attach(List.of(first));
+        int firstOnly = store.dictionarySize();
+
+        LogEntry second = entry(1);
+        store.attach(List.of(second));
+        second.setHostname("unique.example.com");
+        assertTrue(store.dictionarySize() > firstOnly);
+
+        store.detach(List.of(second));
+        assertEquals(firstOnly, store.dictionarySize());
+        assertEquals("unique.example.com", second.getHostname());
+    }
+
+    @Test
+    void holdsDictionaryCodesWithValues() {
+        ColumnarEntryStore store = new ColumnarEntryStore();
+        LogEntry entry = entry(0);
+        int code = LogEntry.FIELD_DICTIONARY.getFoldedCode("HOST0.EXAMPLE.COM");
+        assertNotEquals(FieldDictionary.NO_CODE, code);
+        assertEquals(code, entry.getDictionaryCode(LogEntryField.HOSTNAME));
+
+        store.attach(List.of(entry));
+        assertEquals(code, entry.getDictionaryCode(LogEntryField.HOSTNAME));
+        entry.setMethod("OPTIONS");
+        assertEquals(LogEntry.FIELD_DICTIONARY.getFoldedCode("options"), entry.getDictionaryCode(LogEntryField.METHOD));
+
+        store.detach(List.of(entry));
+        assertEquals(code, entry.getDictionaryCode(LogEntryField.HOSTNAME));
+        assertEquals(FieldDictionary.NO_CODE, entry.getDictionaryCode(LogEntryField.PATH));
+    }
+}
@@ -0,0 +1,88 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+import burp.api.montoya.http.message.Cookie;
+import com.nccgroup.loggerplusplus.logentry.LogEntry.CookieJarStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CookieJarSnapshotTest {
+
+    private static Cookie cookie(String domain, String name, String value) {
+        return new Cookie() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public String value() {
+                return value;
+            }
+
+            @Override
+            public String domain() {
+                return domain;
+            }
+
+            @Override
+            public String path() {
+                return "/";
+            }
+
+            @Override
+            public Optional<ZonedDateTime> expiration() {
+                return Optional.empty();
+            }
+        };
+    }
+
+    private static final List<Cookie> JAR = List.of(
+            cookie("example.com", "session", "abc"),
+            cookie("example.com", "theme", "dark"),
+            cookie("other.com", "id", "1"));
+
+    @Test
+    void classifiesAgainstJarOnFirstUse() {
+        AtomicInteger reads = new AtomicInteger();
+        CookieJarSnapshot snapshot = new CookieJarSnapshot(() -> {
+            reads.incrementAndGet();
+            return JAR;
+        });
+
+        assertEquals(CookieJarStatus.YES, snapshot.classify("example.com", "session=abc; theme=dark;"));
+        assertEquals(1, reads.get(), "The first classification must read the jar");
+        assertEquals(1, snapshot.getVersion());
+    }
+
+    @Test
+    void classifiesYesPartiallyAndNo() {
+        CookieJarSnapshot snapshot = new CookieJarSnapshot(() -> JAR);
+
+        assertEquals(CookieJarStatus.YES, snapshot.classify("example.com", "theme=dark; session=abc; extra=1;"));
+        assertEquals(CookieJarStatus.PARTIALLY, snapshot.classify("example.com", "session=abc;"));
+        assertEquals(CookieJarStatus.PARTIALLY, snapshot.classify("example.com", "session=abc; theme=light;"));
+        assertEquals(CookieJarStatus.NO, snapshot.classify("example.com", "session=xyz;"));
+        assertEquals(CookieJarStatus.NO, snapshot.classify("unknown.com", "session=abc;"));
+        assertEquals(CookieJarStatus.NO, snapshot.classify("example.com", ""));
+    }
+
+    @Test
+    void reusesSnapshotWithinRefreshInterval() {
+        AtomicInteger reads = new AtomicInteger();
+        CookieJarSnapshot snapshot = new CookieJarSnapshot(() -> {
+            reads.incrementAndGet();
+            return JAR;
+        });
+
+        for (int i = 0; i < 100; i++) {
+            snapshot.classify("other.com", "id=1;");
+        }
+        assertEquals(1, reads.get());
+    }
+}
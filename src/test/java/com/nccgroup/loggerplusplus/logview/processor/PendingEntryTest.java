@@ -0,0 +1,178 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.Status;
+import com.nccgroup.loggerplusplus.util.Globals.CaptureOverloadPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingEntryTest {
+
+    private static final int PAIRS = 20000;
+    private static final int WORKERS = 4;
+    private static final int QUEUE_CAPACITY = 64;
+
+    /**
+     * Counts the responses processed for each entry, and holds the response processing of chosen entries.
+     */
+    private static class StubHandler implements CaptureTaskRunner.EntryHandler {
+        private final Map<LogEntry, AtomicInteger> processedResponses = new ConcurrentHashMap<>();
+        private final Set<LogEntry> held = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch heldBlocked;
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger added = new AtomicInteger();
+
+        StubHandler(int held) {
+            this.heldBlocked = new CountDownLatch(held);
+        }
+
+        @Override
+        public LogEntry processEntry(LogEntry logEntry) {
+            if (logEntry.hasResponse()) {
+                if (held.contains(logEntry)) {
+                    heldBlocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                processedResponses.computeIfAbsent(logEntry, e -> new AtomicInteger()).incrementAndGet();
+            }
+            logEntry.setStatus(logEntry.hasResponse() ? Status.PROCESSED : Status.AWAITING_RESPONSE);
+            return logEntry;
+        }
+
+        @Override
+        public void addNewEntry(LogEntry logEntry) {
+            added.incrementAndGet();
+        }
+
+        @Override
+        public void updateExistingEntry(LogEntry logEntry) {
+        }
+
+        @Override
+        public void removeExistingEntry(LogEntry logEntry) {
+        }
+
+        int processedResponses(LogEntry logEntry) {
+            AtomicInteger processed = processedResponses.get(logEntry);
+            return processed == null ? 0 : processed.get();
+        }
+    }
+
+    private static final HttpResponse RESPONSE = (HttpResponse) Proxy.newProxyInstance(HttpResponse.class.getClassLoader(),
+            new Class<?>[]{HttpResponse.class}, (proxy, method, args) -> {
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    private static LogEntry deliverPair(CaptureTaskRunner runner, int preferredIdentifier) {
+        LogEntry logEntry = new LogEntry(ToolType.PROXY, null, new Date());
+        Integer identifier = runner.submitRequest(logEntry, preferredIdentifier);
+        assertNotNull(identifier, "Request was dropped");
+        if (ThreadLocalRandom.current().nextBoolean()) Thread.yield();
+        runner.submitResponse(identifier, new Date(), RESPONSE);
+        return logEntry;
+    }
+
+    /**
+     * Drives the capture tasks the way Burp's threads do, with requests and responses delivered concurrently
+     * onto the fixed pool, while all but one of its workers are held processing a response.
+     * No task may wait on another, so the flood must complete on the one free worker, with every response
+     * processed exactly once.
+     */
+    @Test
+    void floodOfInterleavedPairsCompletesWhileWorkersAreHeld() throws Exception {
+        EntryCorrelationTable<PendingEntry> pendingEntries = new EntryCorrelationTable<>();
+        StubHandler handler = new StubHandler(WORKERS - 1);
+        CaptureTaskRunner runner = new CaptureTaskRunner(WORKERS, QUEUE_CAPACITY, pendingEntries, handler,
+                () -> CaptureOverloadPolicy.BLOCK, () -> TimeUnit.MINUTES.toMillis(10));
+        ExecutorService burpThreads = Executors.newFixedThreadPool(8);
+        try {
+            List<LogEntry> heldEntries = new ArrayList<>();
+            for (int i = 0; i < WORKERS - 1; i++) {
+                LogEntry logEntry = new LogEntry(ToolType.PROXY, null, new Date());
+                handler.held.add(logEntry);
+                Integer identifier = runner.submitRequest(logEntry, -1 - i);
+                runner.submitResponse(identifier, new Date(), RESPONSE);
+                heldEntries.add(logEntry);
+            }
+            assertTrue(handler.heldBlocked.await(30, TimeUnit.SECONDS), "Held responses never started processing");
+
+            List<Future<LogEntry>> deliveries = new ArrayList<>();
+            for (int i = 0; i < PAIRS; i++) {
+                int preferredIdentifier = i;
+                deliveries.add(burpThreads.submit(() -> deliverPair(runner, preferredIdentifier)));
+            }
+            List<LogEntry> floodEntries = new ArrayList<>();
+            for (Future<LogEntry> delivery : deliveries) floodEntries.add(delivery.get(60, TimeUnit.SECONDS));
+
+            //Only the held entries may still be pending once the free worker gets through the flood.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (pendingEntries.size() > WORKERS - 1 && System.nanoTime() < deadline) Thread.sleep(10);
+            assertEquals(WORKERS - 1, pendingEntries.size(), "Flood did not complete while workers were held");
+            for (LogEntry logEntry : floodEntries) {
+                assertEquals(1, handler.processedResponses(logEntry), "Response processed wrong number of times");
+            }
+            for (LogEntry logEntry : heldEntries) {
+                assertEquals(0, handler.processedResponses(logEntry));
+            }
+            assertEquals(0, runner.getDroppedEntryCount());
+            assertEquals(0, runner.getSkippedResponseCount());
+
+            handler.release.countDown();
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (pendingEntries.size() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+            assertEquals(0, pendingEntries.size(), "Held entries did not complete once released");
+            for (LogEntry logEntry : heldEntries) {
+                assertEquals(1, handler.processedResponses(logEntry));
+            }
+            assertEquals(PAIRS + WORKERS - 1, handler.added.get());
+        } finally {
+            handler.release.countDown();
+            burpThreads.shutdownNow();
+            runner.shutdown();
+        }
+    }
+
+    @Test
+    void responseArrivingDuringResponseProcessingIsNotLost() {
+        PendingEntry entry = new PendingEntry(null);
+        assertTrue(entry.startProcessing());
+        assertTrue(entry.finishRequest());
+
+        assertEquals(PendingEntry.ResponseAction.SUBMIT, entry.offerResponse(null, new Date()));
+        assertNotNull(entry.takeResponse());
+        //Second response turns up while the first is being processed.
+        assertEquals(PendingEntry.ResponseAction.ATTACHED, entry.offerResponse(null, new Date()));
+
+        assertTrue(entry.awaitResponse(), "Second response must be handed back to the response task");
+        assertEquals(PendingEntry.State.RESPONSE_SUBMITTED, entry.getState());
+        assertNotNull(entry.takeResponse());
+        assertFalse(entry.awaitResponse());
+        assertTrue(entry.expire());
+    }
+
+    @Test
+    void awaitResponseWithoutPendingResponseCanExpire() {
+        PendingEntry entry = new PendingEntry(null);
+        assertTrue(entry.startProcessing());
+        assertTrue(entry.finishRequest());
+        assertEquals(PendingEntry.ResponseAction.SUBMIT, entry.offerResponse(null, new Date()));
+        assertNotNull(entry.takeResponse());
+
+        assertFalse(entry.awaitResponse());
+        assertEquals(PendingEntry.State.AWAITING_RESPONSE, entry.getState());
+        assertTrue(entry.expire());
+        assertEquals(PendingEntry.ResponseAction.IGNORED, entry.offerResponse(null, new Date()));
+    }
+}